@@ -0,0 +1,99 @@
+/*
+ * ------------------------------------------------------------------------
+  * This source code, its documentation and all appendant files
+ * are protected by copyright law. All rights reserved.
+ *
+ * Copyright, 2008 - 2012
+ * KNIME.com, Zurich, Switzerland
+ *
+ * You may not modify, publish, transmit, transfer or sell, reproduce,
+ * create derivative works from, distribute, perform, display, or in
+ * any way exploit any of the content, in whole or in part, except as
+ * otherwise expressly permitted in writing by the copyright owner or
+ * as specified in the license file distributed with this product.
+ *
+ * If you have any questions please contact the copyright holder:
+ * website: www.knime.com
+ * email: contact@knime.com
+ * ---------------------------------------------------------------------
+ */
+package org.knime.example.benchmark;
+
+import org.knime.core.data.DataColumnSpec;
+import org.knime.core.data.DataColumnSpecCreator;
+import org.knime.core.data.DataRow;
+import org.knime.core.data.def.IntCell;
+import org.knime.example.NumericBin;
+import org.knime.example.NumericBinModel;
+import org.knime.example.NumericBinnerCellFactory;
+import org.knime.example.NumericColumnBinner;
+import org.knime.example.RowKeyResolver;
+
+/**
+ * Creates the bins the benchmarks work on the way the node creates them.
+ * 
+ * @author KNIME.com AG, Zurich, Switzerland
+ */
+final class BinnerFixtures {
+    
+    private BinnerFixtures() {
+        // utility class
+    }
+    
+    /**
+     * @param rows the rows to bin
+     * @param nrOfBins the number of bins
+     * @return equidistant bins between the minimum and maximum of the rows
+     */
+    static NumericBinModel createModel(final DataRow[] rows, 
+            final int nrOfBins) {
+        double[] minMax = SyntheticData.getMinMax(rows);
+        if (Double.isNaN(minMax[0])) {
+            return NumericBinModel.createEquidistant(0, 0, nrOfBins);
+        }
+        return NumericBinModel.createEquidistant(
+                minMax[0], minMax[1], nrOfBins);
+    }
+    
+    /**
+     * @param model the bins
+     * @param keyResolver translates the row ordinals of the bins or 
+     *  <code>null</code> if the bins only count their rows
+     * @return the cell factory of the node binning the generated column
+     */
+    static NumericBinnerCellFactory createCellFactory(
+            final NumericBinModel model, final RowKeyResolver keyResolver) {
+        NumericBin[] bins = null;
+        if (keyResolver != null) {
+            bins = new NumericBin[model.getNumberOfBins()];
+            for (int i = 0; i < bins.length; i++) {
+                bins[i] = new NumericBin(keyResolver);
+            }
+        }
+        DataColumnSpec spec = new DataColumnSpecCreator(
+                "Bin Number", IntCell.TYPE).createSpec();
+        return new NumericBinnerCellFactory(new DataColumnSpec[]{spec}, 
+                new NumericColumnBinner[]{
+                        new NumericColumnBinner(model, 0, bins)});
+    }
+    
+    /**
+     * @param rows the rows to bin
+     * @param model the bins
+     * @param keyResolver knows the keys of the rows
+     * @return the bins containing the rows
+     */
+    static NumericBin[] bin(final DataRow[] rows, final NumericBinModel model,
+            final RowKeyResolver keyResolver) {
+        NumericBinnerCellFactory factory = 
+            createCellFactory(model, keyResolver);
+        for (DataRow row : rows) {
+            factory.getCells(row);
+        }
+        NumericBin[] bins = factory.getBinners()[0].getBins();
+        for (NumericBin bin : bins) {
+            bin.getRowOrdinals().trim();
+        }
+        return bins;
+    }
+}
@@ -0,0 +1,97 @@
+/*
+ * ------------------------------------------------------------------------
+  * This source code, its documentation and all appendant files
+ * are protected by copyright law. All rights reserved.
+ *
+ * Copyright, 2008 - 2012
+ * KNIME.com, Zurich, Switzerland
+ *
+ * You may not modify, publish, transmit, transfer or sell, reproduce,
+ * create derivative works from, distribute, perform, display, or in
+ * any way exploit any of the content, in whole or in part, except as
+ * otherwise expressly permitted in writing by the copyright owner or
+ * as specified in the license file distributed with this product.
+ *
+ * If you have any questions please contact the copyright holder:
+ * website: www.knime.com
+ * email: contact@knime.com
+ * ---------------------------------------------------------------------
+ */
+package org.knime.example.benchmark;
+
+import java.util.concurrent.TimeUnit;
+
+import org.knime.core.data.DataCell;
+import org.knime.core.data.DataRow;
+import org.knime.example.NumericBinModel;
+import org.knime.example.NumericBinnerCellFactory;
+import org.knime.example.RowKeyResolver;
+import org.knime.example.benchmark.SyntheticData.Distribution;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OperationsPerInvocation;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.infra.Blackhole;
+
+/**
+ * Bins a table the way the node does: every row passes the cell factory,
+ * the bins either collect the row ordinals or only count the rows. A 
+ * fresh factory per invocation includes the creation of the bins.
+ * 
+ * @author KNIME.com AG, Zurich, Switzerland
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+public class CellFactoryBenchmark {
+    
+    private static final int ROWS = 100000;
+    
+    /** The number of bins. */
+    @Param({"10", "1000", "100000"})
+    public int m_nrOfBins;
+    
+    /** The distribution of the values. */
+    @Param({"UNIFORM", "SKEWED", "MISSING_HEAVY"})
+    public Distribution m_distribution;
+    
+    /** Whether the bins collect their rows for hiliting. */
+    @Param({"true", "false"})
+    public boolean m_collectRows;
+    
+    private DataRow[] m_rows;
+    
+    private NumericBinModel m_model;
+    
+    private RowKeyResolver m_keyResolver;
+    
+    /**
+     * Generates the rows and the bins.
+     */
+    @Setup
+    public void setUp() {
+        m_rows = SyntheticData.createRows(ROWS, m_distribution);
+        m_model = BinnerFixtures.createModel(m_rows, m_nrOfBins);
+        m_keyResolver = m_collectRows ? new RowKeyResolver() : null;
+    }
+    
+    /**
+     * Bins all rows, the throughput is reported in rows.
+     * @param blackhole consumes the cells
+     */
+    @Benchmark
+    @OperationsPerInvocation(ROWS)
+    public void getCells(final Blackhole blackhole) {
+        NumericBinnerCellFactory factory = 
+            BinnerFixtures.createCellFactory(m_model, m_keyResolver);
+        for (DataRow row : m_rows) {
+            DataCell[] cells = factory.getCells(row);
+            blackhole.consume(cells);
+        }
+    }
+}
@@ -0,0 +1,90 @@
+/*
+ * ------------------------------------------------------------------------
+  * This source code, its documentation and all appendant files
+ * are protected by copyright law. All rights reserved.
+ *
+ * Copyright, 2008 - 2012
+ * KNIME.com, Zurich, Switzerland
+ *
+ * You may not modify, publish, transmit, transfer or sell, reproduce,
+ * create derivative works from, distribute, perform, display, or in
+ * any way exploit any of the content, in whole or in part, except as
+ * otherwise expressly permitted in writing by the copyright owner or
+ * as specified in the license file distributed with this product.
+ *
+ * If you have any questions please contact the copyright holder:
+ * website: www.knime.com
+ * email: contact@knime.com
+ * ---------------------------------------------------------------------
+ */
+package org.knime.example.benchmark;
+
+import java.util.concurrent.TimeUnit;
+
+import org.knime.core.data.DataRow;
+import org.knime.example.NumericBinModel;
+import org.knime.example.NumericColumnBinner;
+import org.knime.example.benchmark.SyntheticData.Distribution;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OperationsPerInvocation;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.infra.Blackhole;
+
+/**
+ * The steady state of the binning hot path: one counting binner bins the 
+ * same rows over and over. The lookup works on the primitive breakpoints 
+ * and the cells of the bins are shared, hence the gc.alloc.rate.norm 
+ * reported by the GC profiler of the {@link BenchmarkRunner} is expected 
+ * to be close to zero bytes per row. A larger value points to an 
+ * allocation on the hot path.
+ * 
+ * @author KNIME.com AG, Zurich, Switzerland
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+public class ColumnBinnerBenchmark {
+    
+    private static final int ROWS = 100000;
+    
+    /** The number of bins. */
+    @Param({"10", "1000", "100000"})
+    public int m_nrOfBins;
+    
+    /** The distribution of the values. */
+    @Param({"UNIFORM", "SKEWED", "MISSING_HEAVY"})
+    public Distribution m_distribution;
+    
+    private DataRow[] m_rows;
+    
+    private NumericColumnBinner m_binner;
+    
+    /**
+     * Generates the rows and the binner.
+     */
+    @Setup
+    public void setUp() {
+        m_rows = SyntheticData.createRows(ROWS, m_distribution);
+        NumericBinModel model = 
+            BinnerFixtures.createModel(m_rows, m_nrOfBins);
+        m_binner = new NumericColumnBinner(model, 0, null);
+    }
+    
+    /**
+     * Bins all rows, the throughput is reported in rows.
+     * @param blackhole consumes the cells
+     */
+    @Benchmark
+    @OperationsPerInvocation(ROWS)
+    public void getCell(final Blackhole blackhole) {
+        for (int i = 0; i < m_rows.length; i++) {
+            blackhole.consume(m_binner.getCell(m_rows[i], i));
+        }
+    }
+}
@@ -0,0 +1,90 @@
+/*
+ * ------------------------------------------------------------------------
+  * This source code, its documentation and all appendant files
+ * are protected by copyright law. All rights reserved.
+ *
+ * Copyright, 2008 - 2012
+ * KNIME.com, Zurich, Switzerland
+ *
+ * You may not modify, publish, transmit, transfer or sell, reproduce,
+ * create derivative works from, distribute, perform, display, or in
+ * any way exploit any of the content, in whole or in part, except as
+ * otherwise expressly permitted in writing by the copyright owner or
+ * as specified in the license file distributed with this product.
+ *
+ * If you have any questions please contact the copyright holder:
+ * website: www.knime.com
+ * email: contact@knime.com
+ * ---------------------------------------------------------------------
+ */
+package org.knime.example.benchmark;
+
+import java.util.concurrent.TimeUnit;
+
+import org.knime.core.data.DataTable;
+import org.knime.core.node.CanceledExecutionException;
+import org.knime.core.node.ExecutionMonitor;
+import org.knime.example.NumericDomainCalculator;
+import org.knime.example.benchmark.SyntheticData.Distribution;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OperationsPerInvocation;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+
+/**
+ * Determines the domain of a column as the node does if the spec has no 
+ * bounds: minimum and maximum and, for equal frequency bins, the 
+ * quantile sketch.
+ * 
+ * @author KNIME.com AG, Zurich, Switzerland
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+public class DomainBenchmark {
+    
+    private static final int ROWS = 1000000;
+    
+    /** The distribution of the values. */
+    @Param({"UNIFORM", "SKEWED", "MISSING_HEAVY"})
+    public Distribution m_distribution;
+    
+    /** The size of the quantile sketch, 0 for minimum and maximum only. */
+    @Param({"0", "200"})
+    public int m_sketchSize;
+    
+    /** The number of threads reducing the chunks. */
+    @Param({"1", "4"})
+    public int m_nrThreads;
+    
+    private DataTable m_table;
+    
+    /**
+     * Generates the rows.
+     */
+    @Setup
+    public void setUp() {
+        m_table = SyntheticData.createTable(
+                SyntheticData.createRows(ROWS, m_distribution));
+    }
+    
+    /**
+     * Scans all rows, the throughput is reported in rows.
+     * @return the calculator, consumed by the harness
+     * @throws CanceledExecutionException never
+     */
+    @Benchmark
+    @OperationsPerInvocation(ROWS)
+    public NumericDomainCalculator calculateDomainValues() 
+        throws CanceledExecutionException {
+        NumericDomainCalculator calculator = new NumericDomainCalculator(
+                new int[]{0}, m_sketchSize, m_nrThreads);
+        calculator.calculate(m_table, ROWS, new ExecutionMonitor());
+        return calculator;
+    }
+}
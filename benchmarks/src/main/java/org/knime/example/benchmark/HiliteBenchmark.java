@@ -0,0 +1,111 @@
+/*
+ * ------------------------------------------------------------------------
+  * This source code, its documentation and all appendant files
+ * are protected by copyright law. All rights reserved.
+ *
+ * Copyright, 2008 - 2012
+ * KNIME.com, Zurich, Switzerland
+ *
+ * You may not modify, publish, transmit, transfer or sell, reproduce,
+ * create derivative works from, distribute, perform, display, or in
+ * any way exploit any of the content, in whole or in part, except as
+ * otherwise expressly permitted in writing by the copyright owner or
+ * as specified in the license file distributed with this product.
+ *
+ * If you have any questions please contact the copyright holder:
+ * website: www.knime.com
+ * email: contact@knime.com
+ * ---------------------------------------------------------------------
+ */
+package org.knime.example.benchmark;
+
+import java.util.BitSet;
+import java.util.LinkedHashSet;
+import java.util.Set;
+import java.util.concurrent.TimeUnit;
+
+import org.knime.core.data.DataRow;
+import org.knime.core.data.RowKey;
+import org.knime.example.BinHiliteIndex;
+import org.knime.example.NumericBin;
+import org.knime.example.RowKeyResolver;
+import org.knime.example.benchmark.SyntheticData.Distribution;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+
+/**
+ * Applies hilite events to the bins as the view does in 
+ * <code>hiLite</code> and <code>unHiLite</code>: the keys of the event are
+ * looked up in the hilite index of the displayed bins.
+ * 
+ * @author KNIME.com AG, Zurich, Switzerland
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+public class HiliteBenchmark {
+    
+    private static final int ROWS = 1000000;
+    
+    /** The number of bins. */
+    @Param({"10", "1000"})
+    public int m_nrOfBins;
+    
+    /** The share of the rows in a hilite event. */
+    @Param({"0.001", "0.5"})
+    public double m_hilitedFraction;
+    
+    private NumericBin[] m_bins;
+    
+    private RowKeyResolver m_keyResolver;
+    
+    private BinHiliteIndex m_index;
+    
+    private Set<RowKey> m_keys;
+    
+    /**
+     * Bins the rows and selects the keys of the events.
+     */
+    @Setup
+    public void setUp() {
+        DataRow[] rows = 
+            SyntheticData.createRows(ROWS, Distribution.UNIFORM);
+        m_keyResolver = new RowKeyResolver();
+        m_keyResolver.setKeys(SyntheticData.getKeys(rows));
+        m_bins = BinnerFixtures.bin(rows, 
+                BinnerFixtures.createModel(rows, m_nrOfBins), m_keyResolver);
+        m_index = new BinHiliteIndex(m_bins, m_keyResolver);
+        // every n-th row, as the handler passes them
+        int step = (int)Math.round(1 / m_hilitedFraction);
+        m_keys = new LinkedHashSet<RowKey>();
+        for (int i = 0; i < rows.length; i += step) {
+            m_keys.add(rows[i].getKey());
+        }
+    }
+    
+    /**
+     * Hilites and unhilites the keys again, the index is unchanged 
+     * afterwards.
+     * @return the bins changed by the unhilite event
+     */
+    @Benchmark
+    public BitSet hiLiteUnHiLite() {
+        m_index.hilite(m_keys);
+        return m_index.unhilite(m_keys);
+    }
+    
+    /**
+     * Builds the index, as for the first hilite event of the view.
+     * @return the index
+     */
+    @Benchmark
+    public BinHiliteIndex createIndex() {
+        return new BinHiliteIndex(m_bins, m_keyResolver);
+    }
+}
@@ -0,0 +1,195 @@
+/*
+ * ------------------------------------------------------------------------
+  * This source code, its documentation and all appendant files
+ * are protected by copyright law. All rights reserved.
+ *
+ * Copyright, 2008 - 2012
+ * KNIME.com, Zurich, Switzerland
+ *
+ * You may not modify, publish, transmit, transfer or sell, reproduce,
+ * create derivative works from, distribute, perform, display, or in
+ * any way exploit any of the content, in whole or in part, except as
+ * otherwise expressly permitted in writing by the copyright owner or
+ * as specified in the license file distributed with this product.
+ *
+ * If you have any questions please contact the copyright holder:
+ * website: www.knime.com
+ * email: contact@knime.com
+ * ---------------------------------------------------------------------
+ */
+package org.knime.example.benchmark;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.IOException;
+import java.util.concurrent.TimeUnit;
+
+import org.knime.core.data.DataRow;
+import org.knime.core.node.CanceledExecutionException;
+import org.knime.core.node.ExecutionMonitor;
+import org.knime.example.NumericBin;
+import org.knime.example.NumericBinModel;
+import org.knime.example.NumericBinnerInternals;
+import org.knime.example.RowKeyResolver;
+import org.knime.example.RowOrdinalSet;
+import org.knime.example.benchmark.SyntheticData.Distribution;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+
+/**
+ * Saves and loads the bins of one column with their row ordinals, as the 
+ * node does with its internals, and the row ordinals of single bins.
+ * 
+ * @author KNIME.com AG, Zurich, Switzerland
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+public class InternalsBenchmark {
+    
+    private static final int ROWS = 1000000;
+    
+    private static final String[] COLUMNS = 
+        new String[]{SyntheticData.COLUMN};
+    
+    /** The number of bins. */
+    @Param({"10", "1000"})
+    public int m_nrOfBins;
+    
+    /** The distribution of the values. */
+    @Param({"UNIFORM", "SKEWED", "MISSING_HEAVY"})
+    public Distribution m_distribution;
+    
+    private RowKeyResolver m_keyResolver;
+    
+    private NumericBinModel[] m_models;
+    
+    private NumericBin[][] m_bins;
+    
+    // overwritten by the save benchmark
+    private File m_saveFile;
+    
+    // written once, read by the load benchmarks
+    private File m_loadFile;
+    
+    // the row ordinals of all bins
+    private byte[] m_ordinals;
+    
+    /**
+     * Bins the rows and writes the internals to load.
+     * @throws Exception if the internals cannot be written
+     */
+    @Setup
+    public void setUp() throws Exception {
+        DataRow[] rows = SyntheticData.createRows(ROWS, m_distribution);
+        m_keyResolver = new RowKeyResolver();
+        m_keyResolver.setKeys(SyntheticData.getKeys(rows));
+        m_models = new NumericBinModel[]{
+                BinnerFixtures.createModel(rows, m_nrOfBins)};
+        m_bins = new NumericBin[][]{
+                BinnerFixtures.bin(rows, m_models[0], m_keyResolver)};
+        m_saveFile = File.createTempFile("nbinSave", ".bin");
+        m_loadFile = File.createTempFile("nbinLoad", ".bin");
+        NumericBinnerInternals.save(m_loadFile, COLUMNS, m_models, m_bins, 
+                null, new ExecutionMonitor());
+        m_ordinals = writeOrdinals();
+    }
+    
+    /**
+     * Deletes the files.
+     */
+    @TearDown
+    public void tearDown() {
+        m_saveFile.delete();
+        m_loadFile.delete();
+    }
+    
+    /**
+     * Writes the bins with their rows.
+     * @return the size of the file
+     * @throws IOException if the file cannot be written
+     * @throws CanceledExecutionException never
+     */
+    @Benchmark
+    public long saveInternals() 
+        throws IOException, CanceledExecutionException {
+        NumericBinnerInternals.save(m_saveFile, COLUMNS, m_models, m_bins, 
+                null, new ExecutionMonitor());
+        return m_saveFile.length();
+    }
+    
+    /**
+     * Copies the file and reads the bins, their rows are read on first 
+     * demand.
+     * @return the loaded internals
+     * @throws IOException if the file cannot be read
+     */
+    @Benchmark
+    public NumericBinnerInternals loadInternals() throws IOException {
+        NumericBinnerInternals internals = 
+            NumericBinnerInternals.load(m_loadFile, m_keyResolver);
+        internals.delete();
+        return internals;
+    }
+    
+    /**
+     * Reads the bins and their rows, as for the first hilite event.
+     * @return the loaded bins
+     * @throws IOException if the file cannot be read
+     */
+    @Benchmark
+    public NumericBin[] loadInternalsWithRows() throws IOException {
+        NumericBinnerInternals internals = 
+            NumericBinnerInternals.load(m_loadFile, m_keyResolver);
+        try {
+            NumericBin[] bins = internals.getBins()[0];
+            // the first access reads the rows of all bins
+            bins[0].getRowOrdinals();
+            return bins;
+        } finally {
+            internals.delete();
+        }
+    }
+    
+    /**
+     * Writes the row ordinals of all bins into memory.
+     * @return the written bytes
+     * @throws IOException never
+     */
+    @Benchmark
+    public byte[] writeOrdinals() throws IOException {
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        DataOutputStream out = new DataOutputStream(bytes);
+        for (NumericBin bin : m_bins[0]) {
+            bin.getRowOrdinals().writeTo(out);
+        }
+        out.close();
+        return bytes.toByteArray();
+    }
+    
+    /**
+     * Reads the row ordinals of all bins from memory.
+     * @return the ordinals of the last bin
+     * @throws IOException never
+     */
+    @Benchmark
+    public RowOrdinalSet readOrdinals() throws IOException {
+        DataInputStream in = new DataInputStream(
+                new ByteArrayInputStream(m_ordinals));
+        RowOrdinalSet ordinals = null;
+        for (int i = 0; i < m_bins[0].length; i++) {
+            ordinals = RowOrdinalSet.readFrom(in);
+        }
+        return ordinals;
+    }
+}
@@ -0,0 +1,140 @@
+/*
+ * ------------------------------------------------------------------------
+  * This source code, its documentation and all appendant files
+ * are protected by copyright law. All rights reserved.
+ *
+ * Copyright, 2008 - 2012
+ * KNIME.com, Zurich, Switzerland
+ *
+ * You may not modify, publish, transmit, transfer or sell, reproduce,
+ * create derivative works from, distribute, perform, display, or in
+ * any way exploit any of the content, in whole or in part, except as
+ * otherwise expressly permitted in writing by the copyright owner or
+ * as specified in the license file distributed with this product.
+ *
+ * If you have any questions please contact the copyright holder:
+ * website: www.knime.com
+ * email: contact@knime.com
+ * ---------------------------------------------------------------------
+ */
+package org.knime.example.benchmark;
+
+import java.awt.Graphics2D;
+import java.awt.image.BufferedImage;
+import java.util.BitSet;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+
+import org.knime.example.NumericBin;
+import org.knime.example.NumericBinModel;
+import org.knime.example.NumericBinnerViewPanel;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+
+/**
+ * Paints the histogram panel into an image, headless. The bars are 
+ * rendered once in the background, each paint copies them and draws the 
+ * selected and hilited bins on top.
+ * 
+ * @author KNIME.com AG, Zurich, Switzerland
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Fork(jvmArgsAppend = "-Djava.awt.headless=true")
+public class PanelBenchmark {
+    
+    private static final int WIDTH = 800;
+    
+    private static final int HEIGHT = 600;
+    
+    /** 
+     * The number of bins, more bins than pixels are aggregated. With 500
+     * bins the bars are only one pixel wide.
+     */
+    @Param({"100", "500", "100000"})
+    public int m_nrOfBins;
+    
+    private NumericBinnerViewPanel m_panel;
+    
+    private BufferedImage m_image;
+    
+    private Graphics2D m_graphics;
+    
+    // released by the repaint which follows the rendering of the bars
+    private volatile CountDownLatch m_rendered;
+    
+    /**
+     * Creates the bins, selects and hilites some of them and waits until 
+     * the bars are rendered.
+     * @throws Exception if waiting is interrupted
+     */
+    @Setup
+    public void setUp() throws Exception {
+        NumericBin[] bins = new NumericBin[m_nrOfBins];
+        BitSet selected = new BitSet();
+        for (int i = 0; i < bins.length; i++) {
+            // a bell shaped histogram
+            double x = (i - bins.length / 2.0) / (bins.length / 6.0);
+            int size = (int)(1000 * Math.exp(-x * x / 2));
+            bins[i] = new NumericBin(size);
+            if (i % 7 == 0) {
+                bins[i].setHiliteCount(size / 2);
+            }
+            if (i % 11 == 0) {
+                selected.set(i);
+            }
+        }
+        m_panel = new NumericBinnerViewPanel(bins) {
+            /** {@inheritDoc} */
+            @Override
+            public void repaint() {
+                super.repaint();
+                CountDownLatch rendered = m_rendered;
+                if (rendered != null) {
+                    rendered.countDown();
+                }
+            }
+        };
+        m_panel.updateView(bins, 
+                NumericBinModel.createEquidistant(0, 1, bins.length));
+        m_panel.setSize(WIDTH, HEIGHT);
+        m_panel.setSelected(selected, false);
+        m_image = new BufferedImage(WIDTH, HEIGHT, 
+                BufferedImage.TYPE_INT_ARGB);
+        m_graphics = m_image.createGraphics();
+        // the first paint starts the rendering, the panel repaints itself
+        // once the image is set on the event dispatch thread
+        m_rendered = new CountDownLatch(1);
+        m_panel.paint(m_graphics);
+        if (!m_rendered.await(1, TimeUnit.MINUTES)) {
+            throw new IllegalStateException("The bars were not rendered");
+        }
+    }
+    
+    /**
+     * Releases the graphics.
+     */
+    @TearDown
+    public void tearDown() {
+        m_graphics.dispose();
+    }
+    
+    /**
+     * Paints the whole panel.
+     * @return the image painted into
+     */
+    @Benchmark
+    public BufferedImage paint() {
+        m_panel.paint(m_graphics);
+        return m_image;
+    }
+}
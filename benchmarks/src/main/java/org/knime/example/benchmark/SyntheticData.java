@@ -0,0 +1,165 @@
+/*
+ * ------------------------------------------------------------------------
+  * This source code, its documentation and all appendant files
+ * are protected by copyright law. All rights reserved.
+ *
+ * Copyright, 2008 - 2012
+ * KNIME.com, Zurich, Switzerland
+ *
+ * You may not modify, publish, transmit, transfer or sell, reproduce,
+ * create derivative works from, distribute, perform, display, or in
+ * any way exploit any of the content, in whole or in part, except as
+ * otherwise expressly permitted in writing by the copyright owner or
+ * as specified in the license file distributed with this product.
+ *
+ * If you have any questions please contact the copyright holder:
+ * website: www.knime.com
+ * email: contact@knime.com
+ * ---------------------------------------------------------------------
+ */
+package org.knime.example.benchmark;
+
+import java.util.Arrays;
+import java.util.Iterator;
+import java.util.Random;
+
+import org.knime.core.data.DataCell;
+import org.knime.core.data.DataColumnSpecCreator;
+import org.knime.core.data.DataRow;
+import org.knime.core.data.DataTable;
+import org.knime.core.data.DataTableSpec;
+import org.knime.core.data.DataType;
+import org.knime.core.data.RowIterator;
+import org.knime.core.data.RowKey;
+import org.knime.core.data.def.DefaultRow;
+import org.knime.core.data.def.DoubleCell;
+
+/**
+ * Generates rows with one double column for the benchmarks. The values 
+ * are reproducible, each distribution uses a fixed seed.
+ * 
+ * @author KNIME.com AG, Zurich, Switzerland
+ */
+public final class SyntheticData {
+    
+    /** The name of the generated column. */
+    public static final String COLUMN = "value";
+    
+    /** The distributions of the generated values. */
+    public enum Distribution {
+        /** Uniform in [0, 1000). */
+        UNIFORM,
+        /** Log-normal, most values are small, few are very large. */
+        SKEWED,
+        /** Uniform in [0, 1000), 80% of the values are missing. */
+        MISSING_HEAVY
+    }
+    
+    private static final long SEED = 20121017L;
+    
+    private SyntheticData() {
+        // utility class
+    }
+    
+    /**
+     * @return the spec of the generated rows
+     */
+    public static DataTableSpec createSpec() {
+        return new DataTableSpec(new DataColumnSpecCreator(
+                COLUMN, DoubleCell.TYPE).createSpec());
+    }
+    
+    /**
+     * @param nrRows the number of rows
+     * @param distribution the distribution of the values
+     * @return the rows, their keys are "Row0", "Row1", ...
+     */
+    public static DataRow[] createRows(final int nrRows, 
+            final Distribution distribution) {
+        Random random = new Random(SEED + distribution.ordinal());
+        DataCell missing = DataType.getMissingCell();
+        DataRow[] rows = new DataRow[nrRows];
+        for (int i = 0; i < nrRows; i++) {
+            DataCell cell;
+            switch (distribution) {
+            case SKEWED:
+                cell = new DoubleCell(Math.exp(2 * random.nextGaussian()));
+                break;
+            case MISSING_HEAVY:
+                cell = random.nextInt(5) == 0 
+                    ? new DoubleCell(1000 * random.nextDouble()) : missing;
+                break;
+            default:
+                cell = new DoubleCell(1000 * random.nextDouble());
+            }
+            rows[i] = new DefaultRow(new RowKey("Row" + i), cell);
+        }
+        return rows;
+    }
+    
+    /**
+     * @param rows the rows
+     * @return the minimum and the maximum of the values, NaN if all are 
+     *  missing
+     */
+    public static double[] getMinMax(final DataRow[] rows) {
+        double min = Double.POSITIVE_INFINITY;
+        double max = Double.NEGATIVE_INFINITY;
+        for (DataRow row : rows) {
+            DataCell cell = row.getCell(0);
+            if (!cell.isMissing()) {
+                double value = ((DoubleCell)cell).getDoubleValue();
+                min = Math.min(min, value);
+                max = Math.max(max, value);
+            }
+        }
+        if (min > max) {
+            return new double[]{Double.NaN, Double.NaN};
+        }
+        return new double[]{min, max};
+    }
+    
+    /**
+     * @param rows the rows
+     * @return the keys of the rows
+     */
+    public static RowKey[] getKeys(final DataRow[] rows) {
+        RowKey[] keys = new RowKey[rows.length];
+        for (int i = 0; i < rows.length; i++) {
+            keys[i] = rows[i].getKey();
+        }
+        return keys;
+    }
+    
+    /**
+     * @param rows the rows
+     * @return an in-memory table of the rows
+     */
+    public static DataTable createTable(final DataRow[] rows) {
+        final DataTableSpec spec = createSpec();
+        return new DataTable() {
+            /** {@inheritDoc} */
+            @Override
+            public DataTableSpec getDataTableSpec() {
+                return spec;
+            }
+            /** {@inheritDoc} */
+            @Override
+            public RowIterator iterator() {
+                final Iterator<DataRow> it = Arrays.asList(rows).iterator();
+                return new RowIterator() {
+                    /** {@inheritDoc} */
+                    @Override
+                    public boolean hasNext() {
+                        return it.hasNext();
+                    }
+                    /** {@inheritDoc} */
+                    @Override
+                    public DataRow next() {
+                        return it.next();
+                    }
+                };
+            }
+        };
+    }
+}
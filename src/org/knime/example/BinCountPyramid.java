@@ -0,0 +1,215 @@
+/*
+ * ------------------------------------------------------------------------
+  * This source code, its documentation and all appendant files
+ * are protected by copyright law. All rights reserved.
+ *
+ * Copyright, 2008 - 2012
+ * KNIME.com, Zurich, Switzerland
+ *
+ * You may not modify, publish, transmit, transfer or sell, reproduce,
+ * create derivative works from, distribute, perform, display, or in
+ * any way exploit any of the content, in whole or in part, except as
+ * otherwise expressly permitted in writing by the copyright owner or
+ * as specified in the license file distributed with this product.
+ *
+ * If you have any questions please contact the copyright holder:
+ * website: www.knime.com
+ * email: contact@knime.com
+ * ---------------------------------------------------------------------
+ */
+package org.knime.example;
+
+/**
+ * Multi-resolution aggregation of bin counts. Level 0 holds the counts, 
+ * each node of the next level aggregates two nodes of the level below 
+ * (minimum, maximum and sum). The minimum, maximum and sum of any range of
+ * bins is computed from O(log n) nodes, hence a view can aggregate the 
+ * bins falling into one pixel column without touching each of them. 
+ * Changing a count updates O(log n) nodes.
+ * <p>
+ * The pyramid is not thread-safe.
+ * 
+ * @author KNIME.com AG, Zurich, Switzerland
+ */
+public class BinCountPyramid {
+    
+    // the aggregates of the levels above the counts
+    private final long[][] m_min;
+    
+    private final long[][] m_max;
+    
+    private final long[][] m_sum;
+    
+    private final long[] m_counts;
+    
+    /**
+     * @param counts the counts of the bins, not copied
+     */
+    public BinCountPyramid(final long[] counts) {
+        m_counts = counts;
+        int levels = 0;
+        for (int length = counts.length; length > 1; 
+                length = (length + 1) / 2) {
+            levels++;
+        }
+        m_min = new long[levels][];
+        m_max = new long[levels][];
+        m_sum = new long[levels][];
+        int length = counts.length;
+        for (int level = 0; level < levels; level++) {
+            length = (length + 1) / 2;
+            m_min[level] = new long[length];
+            m_max[level] = new long[length];
+            m_sum[level] = new long[length];
+            for (int node = 0; node < length; node++) {
+                aggregate(level, node);
+            }
+        }
+    }
+    
+    /**
+     * @param bins the bins
+     * @return the pyramid over the sizes of the bins
+     */
+    public static BinCountPyramid createForSizes(final NumericBin[] bins) {
+        long[] counts = new long[bins.length];
+        for (int i = 0; i < counts.length; i++) {
+            counts[i] = bins[i].getSize();
+        }
+        return new BinCountPyramid(counts);
+    }
+    
+    /**
+     * @return the number of bins
+     */
+    public int size() {
+        return m_counts.length;
+    }
+    
+    /**
+     * @param bin the index of the bin
+     * @return the count of the bin
+     */
+    public long get(final int bin) {
+        return m_counts[bin];
+    }
+    
+    /**
+     * Changes the count of a bin and updates the aggregates above it.
+     * 
+     * @param bin the index of the bin
+     * @param count the new count
+     */
+    public void set(final int bin, final long count) {
+        m_counts[bin] = count;
+        int node = bin;
+        for (int level = 0; level < m_sum.length; level++) {
+            node >>= 1;
+            aggregate(level, node);
+        }
+    }
+    
+    /**
+     * @param from the first bin, inclusive
+     * @param to the last bin, exclusive
+     * @return the sum of the counts of the bins in the range
+     */
+    public long getSum(final int from, final int to) {
+        long sum = 0;
+        int l = from;
+        int r = to;
+        int level = -1;
+        while (l < r) {
+            if ((l & 1) != 0) {
+                sum += sum(level, l++);
+            }
+            if ((r & 1) != 0) {
+                sum += sum(level, --r);
+            }
+            l >>= 1;
+            r >>= 1;
+            level++;
+        }
+        return sum;
+    }
+    
+    /**
+     * @param from the first bin, inclusive
+     * @param to the last bin, exclusive
+     * @return the smallest count of the bins in the non-empty range
+     */
+    public long getMin(final int from, final int to) {
+        long min = Long.MAX_VALUE;
+        int l = from;
+        int r = to;
+        int level = -1;
+        while (l < r) {
+            if ((l & 1) != 0) {
+                min = Math.min(min, min(level, l++));
+            }
+            if ((r & 1) != 0) {
+                min = Math.min(min, min(level, --r));
+            }
+            l >>= 1;
+            r >>= 1;
+            level++;
+        }
+        return min;
+    }
+    
+    /**
+     * @param from the first bin, inclusive
+     * @param to the last bin, exclusive
+     * @return the largest count of the bins in the range, 0 if it is empty
+     */
+    public long getMax(final int from, final int to) {
+        long max = 0;
+        int l = from;
+        int r = to;
+        int level = -1;
+        while (l < r) {
+            if ((l & 1) != 0) {
+                max = Math.max(max, max(level, l++));
+            }
+            if ((r & 1) != 0) {
+                max = Math.max(max, max(level, --r));
+            }
+            l >>= 1;
+            r >>= 1;
+            level++;
+        }
+        return max;
+    }
+    
+    // level -1 are the counts themselves
+    
+    private long sum(final int level, final int node) {
+        return level < 0 ? m_counts[node] : m_sum[level][node];
+    }
+    
+    private long min(final int level, final int node) {
+        return level < 0 ? m_counts[node] : m_min[level][node];
+    }
+    
+    private long max(final int level, final int node) {
+        return level < 0 ? m_counts[node] : m_max[level][node];
+    }
+    
+    private void aggregate(final int level, final int node) {
+        int left = 2 * node;
+        int right = left + 1;
+        int below = level == 0 ? m_counts.length : m_sum[level - 1].length;
+        if (right < below) {
+            m_min[level][node] = Math.min(min(level - 1, left), 
+                    min(level - 1, right));
+            m_max[level][node] = Math.max(max(level - 1, left), 
+                    max(level - 1, right));
+            m_sum[level][node] = sum(level - 1, left) + sum(level - 1, right);
+        } else {
+            m_min[level][node] = min(level - 1, left);
+            m_max[level][node] = max(level - 1, left);
+            m_sum[level][node] = sum(level - 1, left);
+        }
+    }
+
+}
@@ -0,0 +1,132 @@
+/*
+ * ------------------------------------------------------------------------
+  * This source code, its documentation and all appendant files
+ * are protected by copyright law. All rights reserved.
+ *
+ * Copyright, 2008 - 2012
+ * KNIME.com, Zurich, Switzerland
+ *
+ * You may not modify, publish, transmit, transfer or sell, reproduce,
+ * create derivative works from, distribute, perform, display, or in
+ * any way exploit any of the content, in whole or in part, except as
+ * otherwise expressly permitted in writing by the copyright owner or
+ * as specified in the license file distributed with this product.
+ *
+ * If you have any questions please contact the copyright holder:
+ * website: www.knime.com
+ * email: contact@knime.com
+ * ---------------------------------------------------------------------
+ */
+package org.knime.example;
+
+import java.util.Arrays;
+import java.util.BitSet;
+import java.util.Set;
+
+import org.knime.core.data.RowKey;
+
+/**
+ * Tracks the hilited rows of a set of bins. A reverse index from the row 
+ * ordinals to the bins allows to update the hilited row counters of the 
+ * bins (see {@link NumericBin#getHiliteCount()}) in time proportional to 
+ * the number of keys an event carries instead of the number of rows in 
+ * the bins.
+ * <p>
+ * The index is not thread-safe, it is meant to be used on the event 
+ * dispatch thread.
+ * 
+ * @author KNIME.com AG, Zurich, Switzerland
+ */
+public class BinHiliteIndex {
+    
+    private final NumericBin[] m_bins;
+    
+    private final RowKeyResolver m_keyResolver;
+    
+    // the bin of each row ordinal or NumericBinLookup.NO_BIN
+    private final int[] m_binOfRow;
+    
+    private final BitSet m_hilited;
+    
+    /**
+     * Builds the reverse index, the rows of all bins are read once.
+     * 
+     * @param bins the bins, they must know their rows
+     * @param keyResolver translates the keys of the events into ordinals
+     */
+    public BinHiliteIndex(final NumericBin[] bins, 
+            final RowKeyResolver keyResolver) {
+        m_bins = bins;
+        m_keyResolver = keyResolver;
+        m_binOfRow = new int[keyResolver.getKeys().length];
+        Arrays.fill(m_binOfRow, NumericBinLookup.NO_BIN);
+        for (int bin = 0; bin < bins.length; bin++) {
+            RowOrdinalSet rows = bins[bin].getRowOrdinals();
+            if (rows == null) {
+                continue;
+            }
+            for (RowOrdinalSet.OrdinalIterator it = rows.iterator(); 
+                    it.hasNext();) {
+                m_binOfRow[it.next()] = bin;
+            }
+        }
+        m_hilited = new BitSet(m_binOfRow.length);
+        for (NumericBin bin : bins) {
+            bin.setHiliteCount(0);
+        }
+    }
+    
+    /**
+     * Marks the rows as hilited and updates the hilite counts of their 
+     * bins. Unknown keys and rows which are already hilited are ignored.
+     * 
+     * @param keys the keys of the hilited rows
+     * @return the indices of the bins whose hilite count changed
+     */
+    public BitSet hilite(final Set<RowKey> keys) {
+        return update(keys, true);
+    }
+    
+    /**
+     * Marks the rows as not hilited and updates the hilite counts of their 
+     * bins. Unknown keys and rows which are not hilited are ignored.
+     * 
+     * @param keys the keys of the unhilited rows
+     * @return the indices of the bins whose hilite count changed
+     */
+    public BitSet unhilite(final Set<RowKey> keys) {
+        return update(keys, false);
+    }
+    
+    /**
+     * Marks all rows as not hilited.
+     */
+    public void clear() {
+        m_hilited.clear();
+        for (NumericBin bin : m_bins) {
+            bin.setHiliteCount(0);
+        }
+    }
+    
+    private BitSet update(final Set<RowKey> keys, final boolean hilite) {
+        BitSet changed = new BitSet(m_bins.length);
+        for (RowKey key : keys) {
+            int ordinal = m_keyResolver.getOrdinal(key);
+            if (ordinal < 0 || ordinal >= m_binOfRow.length
+                    || m_hilited.get(ordinal) == hilite) {
+                continue;
+            }
+            int bin = m_binOfRow[ordinal];
+            if (bin == NumericBinLookup.NO_BIN) {
+                continue;
+            }
+            m_hilited.set(ordinal, hilite);
+            NumericBin changedBin = m_bins[bin];
+            changedBin.setHiliteCount(
+                    changedBin.getHiliteCount() + (hilite ? 1 : -1));
+            changed.set(bin);
+        }
+        return changed;
+    }
+
+}
@@ -0,0 +1,291 @@
+/*
+ * ------------------------------------------------------------------------
+  * This source code, its documentation and all appendant files
+ * are protected by copyright law. All rights reserved.
+ *
+ * Copyright, 2008 - 2012
+ * KNIME.com, Zurich, Switzerland
+ *
+ * You may not modify, publish, transmit, transfer or sell, reproduce,
+ * create derivative works from, distribute, perform, display, or in
+ * any way exploit any of the content, in whole or in part, except as
+ * otherwise expressly permitted in writing by the copyright owner or
+ * as specified in the license file distributed with this product.
+ *
+ * If you have any questions please contact the copyright holder:
+ * website: www.knime.com
+ * email: contact@knime.com
+ * ---------------------------------------------------------------------
+ */
+package org.knime.example;
+
+import java.io.DataInputStream;
+import java.io.DataOutput;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.channels.FileChannel;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+import org.knime.core.node.NodeLogger;
+
+/**
+ * Keeps the rows of the bins within a memory budget. The bins report every
+ * added row, the spill keeps track of the memory of each bin. If the rows 
+ * kept in memory by all bins exceed the budget, not counting the memory of
+ * the empty sets, 
+ * each bin writes its rows as a sorted run of deflated blocks (see 
+ * {@link CompressedBlockOutputStream}) to a temporary file and starts 
+ * over with an empty set. All runs are written through one stream, which 
+ * is allocated at the first spill and reused, the position of each run in 
+ * the file is recorded. Since rows are added in the order of the table, 
+ * the runs of a bin follow each other, i.e. reading the rows of a bin 
+ * merges its runs and the rows in memory in one pass.
+ * <p>
+ * The spill is not thread-safe while rows are added, it is read by the 
+ * bins after the binning. The temporary file is deleted by 
+ * {@link #close()}.
+ * 
+ * @author KNIME.com AG, Zurich, Switzerland
+ */
+public final class BinMembershipSpill {
+    
+    // the memory of a bin without rows, not counted against the budget
+    private static final long EMPTY_MEMORY = 
+        new RowOrdinalSet().getMemoryUsage();
+    
+    private static final NodeLogger LOGGER = 
+        NodeLogger.getLogger(BinMembershipSpill.class);
+    
+    private final long m_budget;
+    
+    private final List<NumericBin> m_bins = new ArrayList<NumericBin>();
+    
+    // the positions of the runs of each bin in the file
+    private long[][] m_runs = new long[8][];
+    
+    private int[] m_nrOfRuns = new int[8];
+    
+    private int[] m_spilledCounts = new int[8];
+    
+    // the memory of the rows of each bin when it last reported a row
+    private long[] m_memoryOfBins = new long[8];
+    
+    // the sum of the memory of all bins
+    private long m_memory;
+    
+    private long m_peakMemory;
+    
+    private File m_file;
+    
+    private RandomAccessFile m_raf;
+    
+    // writes the runs, one stream per run
+    private CompressedBlockOutputStream m_blocks;
+    
+    private DataOutputStream m_out;
+    
+    // the end of the written runs, reading moves the position of the file
+    private long m_length;
+    
+    /**
+     * @param budget the number of bytes the rows of all bins may use 
+     *  before they are written to disk
+     */
+    public BinMembershipSpill(final long budget) {
+        m_budget = budget;
+    }
+    
+    /**
+     * @param bin a new bin whose rows are kept within the budget
+     * @return the index of the bin in this spill
+     */
+    int register(final NumericBin bin) {
+        int index = m_bins.size();
+        if (index == m_runs.length) {
+            m_runs = Arrays.copyOf(m_runs, 2 * index);
+            m_nrOfRuns = Arrays.copyOf(m_nrOfRuns, 2 * index);
+            m_spilledCounts = Arrays.copyOf(m_spilledCounts, 2 * index);
+            m_memoryOfBins = Arrays.copyOf(m_memoryOfBins, 2 * index);
+        }
+        m_bins.add(bin);
+        m_runs[index] = new long[1];
+        m_memoryOfBins[index] = EMPTY_MEMORY;
+        m_memory += EMPTY_MEMORY;
+        return index;
+    }
+    
+    /**
+     * Called after a row was added to a bin, writes the rows of all bins 
+     * to disk if they exceed the budget. Takes constant time unless the
+     * rows are written.
+     * 
+     * @param index the index of the bin
+     */
+    void rowAdded(final int index) {
+        long memory = m_bins.get(index).getRowsInMemory().getMemoryUsage();
+        m_memory += memory - m_memoryOfBins[index];
+        m_memoryOfBins[index] = memory;
+        if (m_memory > m_peakMemory) {
+            m_peakMemory = m_memory;
+        }
+        if (m_memory - EMPTY_MEMORY * m_bins.size() > m_budget) {
+            try {
+                spill();
+            } catch (IOException e) {
+                throw new IllegalStateException(
+                        "Could not write the rows of the bins to " + m_file 
+                        + ": " + e.getMessage(), e);
+            }
+        }
+    }
+    
+    private synchronized void spill() throws IOException {
+        if (m_raf == null) {
+            m_file = File.createTempFile("numericBinnerRows", ".bin");
+            m_file.deleteOnExit();
+            m_raf = new RandomAccessFile(m_file, "rw");
+            m_blocks = new CompressedBlockOutputStream(m_raf.getChannel());
+            m_out = new DataOutputStream(m_blocks);
+        }
+        FileChannel channel = m_raf.getChannel();
+        channel.position(m_length);
+        for (int i = 0; i < m_bins.size(); i++) {
+            NumericBin bin = m_bins.get(i);
+            RowOrdinalSet rows = bin.getRowsInMemory();
+            if (rows.size() == 0) {
+                continue;
+            }
+            if (m_nrOfRuns[i] == m_runs[i].length) {
+                m_runs[i] = Arrays.copyOf(m_runs[i], 2 * m_nrOfRuns[i]);
+            }
+            m_runs[i][m_nrOfRuns[i]++] = channel.position();
+            rows.writeTo(m_out);
+            m_out.flush();
+            m_blocks.finishStream();
+            m_spilledCounts[i] += rows.size();
+            bin.rowsSpilled();
+            m_memory -= m_memoryOfBins[i] - EMPTY_MEMORY;
+            m_memoryOfBins[i] = EMPTY_MEMORY;
+        }
+        m_length = channel.position();
+        LOGGER.debug("Spilled the rows of " + m_bins.size() 
+                + " bins to " + m_file);
+    }
+    
+    /**
+     * @param index the index of the bin
+     * @return true if some rows of the bin were written to disk
+     */
+    boolean hasRuns(final int index) {
+        return m_nrOfRuns[index] > 0;
+    }
+    
+    /**
+     * @param index the index of the bin
+     * @return the number of rows of the bin written to disk
+     */
+    int getSpilledCount(final int index) {
+        return m_spilledCounts[index];
+    }
+    
+    /**
+     * @return the largest memory used by the rows of all bins which was 
+     *  observed while rows were added, in bytes
+     */
+    public long getPeakMemory() {
+        return m_peakMemory;
+    }
+    
+    /**
+     * Merges the runs of a bin with its rows in memory.
+     * 
+     * @param index the index of the bin
+     * @param inMemory the rows of the bin which were not written to disk
+     * @return all rows of the bin
+     * @throws IllegalStateException if the spilled rows cannot be read
+     */
+    synchronized RowOrdinalSet readRows(final int index, 
+            final RowOrdinalSet inMemory) {
+        RowOrdinalSet rows = new RowOrdinalSet();
+        try {
+            for (int i = 0; i < m_nrOfRuns[index]; i++) {
+                DataInputStream in = openRun(m_runs[index][i]);
+                rows.addAll(in);
+                in.close();
+            }
+        } catch (IOException e) {
+            throw new IllegalStateException(
+                    "Could not read the rows of the bins from " + m_file 
+                    + ": " + e.getMessage(), e);
+        }
+        for (RowOrdinalSet.OrdinalIterator it = inMemory.iterator(); 
+                it.hasNext();) {
+            rows.add(it.next());
+        }
+        rows.trim();
+        return rows;
+    }
+    
+    /**
+     * Writes all rows of a bin in the format of 
+     * {@link RowOrdinalSet#writeTo(DataOutput)}. Only one run at a time is
+     * read into memory.
+     * 
+     * @param index the index of the bin
+     * @param inMemory the rows of the bin which were not written to disk
+     * @param out the output to write to
+     * @throws IOException if the file cannot be read or the output cannot
+     *  be written
+     */
+    synchronized void writeRows(final int index, 
+            final RowOrdinalSet inMemory, final DataOutput out) 
+        throws IOException {
+        out.writeInt(getSpilledCount(index) + inMemory.size());
+        int previous = -1;
+        for (int i = 0; i < m_nrOfRuns[index]; i++) {
+            DataInputStream in = openRun(m_runs[index][i]);
+            previous = RowOrdinalSet.readFrom(in).writeDeltas(out, previous);
+            in.close();
+        }
+        inMemory.writeDeltas(out, previous);
+    }
+    
+    private DataInputStream openRun(final long position) throws IOException {
+        if (m_raf == null) {
+            throw new IOException("The spilled rows are already deleted");
+        }
+        FileChannel channel = m_raf.getChannel();
+        channel.position(position);
+        return new DataInputStream(new CompressedBlockInputStream(channel));
+    }
+    
+    /**
+     * Deletes the temporary file. The bins must not be read afterwards.
+     */
+    public synchronized void close() {
+        if (m_raf == null) {
+            return;
+        }
+        try {
+            // releases the deflater, the end marker goes behind the last run
+            m_raf.getChannel().position(m_length);
+            m_blocks.close();
+        } catch (IOException e) {
+            LOGGER.debug("Could not finish " + m_file, e);
+        }
+        try {
+            m_raf.close();
+        } catch (IOException e) {
+            LOGGER.debug("Could not close " + m_file, e);
+        }
+        if (!m_file.delete()) {
+            LOGGER.debug("Could not delete " + m_file);
+        }
+        m_raf = null;
+    }
+
+}
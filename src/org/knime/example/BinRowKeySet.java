@@ -0,0 +1,122 @@
+/*
+ * ------------------------------------------------------------------------
+  * This source code, its documentation and all appendant files
+ * are protected by copyright law. All rights reserved.
+ *
+ * Copyright, 2008 - 2012
+ * KNIME.com, Zurich, Switzerland
+ *
+ * You may not modify, publish, transmit, transfer or sell, reproduce,
+ * create derivative works from, distribute, perform, display, or in
+ * any way exploit any of the content, in whole or in part, except as
+ * otherwise expressly permitted in writing by the copyright owner or
+ * as specified in the license file distributed with this product.
+ *
+ * If you have any questions please contact the copyright holder:
+ * website: www.knime.com
+ * email: contact@knime.com
+ * ---------------------------------------------------------------------
+ */
+package org.knime.example;
+
+import java.util.AbstractSet;
+import java.util.BitSet;
+import java.util.Collections;
+import java.util.Iterator;
+import java.util.NoSuchElementException;
+
+import org.knime.core.data.RowKey;
+
+/**
+ * The row keys of several bins as a read-only set. The keys are not 
+ * collected, they are streamed from the bins one bin after the other when 
+ * the set is iterated. The bins are disjoint, hence the size is the sum of 
+ * the bin sizes.
+ * 
+ * @author KNIME.com AG, Zurich, Switzerland
+ */
+class BinRowKeySet extends AbstractSet<RowKey> {
+    
+    private final NumericBin[] m_bins;
+    
+    // the indices of the bins whose keys are contained
+    private final BitSet m_binIndices;
+    
+    private final int m_size;
+    
+    /**
+     * @param bins all bins
+     * @param binIndices the indices of the bins whose row keys are 
+     *  contained, it must not be changed afterwards
+     */
+    BinRowKeySet(final NumericBin[] bins, final BitSet binIndices) {
+        m_bins = bins;
+        m_binIndices = binIndices;
+        long size = 0;
+        for (int i = m_binIndices.nextSetBit(0); i >= 0; 
+                i = m_binIndices.nextSetBit(i + 1)) {
+            size += bins[i].getSize();
+        }
+        // a set cannot report more
+        m_size = (int)Math.min(size, Integer.MAX_VALUE);
+    }
+    
+    /** {@inheritDoc} */
+    @Override
+    public int size() {
+        return m_size;
+    }
+    
+    /** {@inheritDoc} */
+    @Override
+    public boolean contains(final Object o) {
+        for (int i = m_binIndices.nextSetBit(0); i >= 0; 
+                i = m_binIndices.nextSetBit(i + 1)) {
+            if (m_bins[i].getRowKeys().contains(o)) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    /** {@inheritDoc} */
+    @Override
+    public Iterator<RowKey> iterator() {
+        return new Iterator<RowKey>() {
+            
+            // the next bin whose keys are iterated, -1 if there is none
+            private int m_nextBin = m_binIndices.nextSetBit(0);
+            
+            private Iterator<RowKey> m_keys = 
+                Collections.<RowKey>emptySet().iterator();
+            
+            /** {@inheritDoc} */
+            @Override
+            public boolean hasNext() {
+                while (!m_keys.hasNext()) {
+                    if (m_nextBin < 0) {
+                        return false;
+                    }
+                    m_keys = m_bins[m_nextBin].getRowKeys().iterator();
+                    m_nextBin = m_binIndices.nextSetBit(m_nextBin + 1);
+                }
+                return true;
+            }
+            
+            /** {@inheritDoc} */
+            @Override
+            public RowKey next() {
+                if (!hasNext()) {
+                    throw new NoSuchElementException();
+                }
+                return m_keys.next();
+            }
+            
+            /** {@inheritDoc} */
+            @Override
+            public void remove() {
+                throw new UnsupportedOperationException();
+            }
+        };
+    }
+}
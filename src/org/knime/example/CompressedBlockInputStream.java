@@ -0,0 +1,173 @@
+/*
+ * ------------------------------------------------------------------------
+  * This source code, its documentation and all appendant files
+ * are protected by copyright law. All rights reserved.
+ *
+ * Copyright, 2008 - 2012
+ * KNIME.com, Zurich, Switzerland
+ *
+ * You may not modify, publish, transmit, transfer or sell, reproduce,
+ * create derivative works from, distribute, perform, display, or in
+ * any way exploit any of the content, in whole or in part, except as
+ * otherwise expressly permitted in writing by the copyright owner or
+ * as specified in the license file distributed with this product.
+ *
+ * If you have any questions please contact the copyright holder:
+ * website: www.knime.com
+ * email: contact@knime.com
+ * ---------------------------------------------------------------------
+ */
+package org.knime.example;
+
+import java.io.EOFException;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.ByteBuffer;
+import java.nio.channels.ReadableByteChannel;
+import java.util.zip.CRC32;
+import java.util.zip.DataFormatException;
+import java.util.zip.Inflater;
+
+/**
+ * Reads a stream written by {@link CompressedBlockOutputStream}. The 
+ * checksum of every block is verified. The stream ends at the end marker.
+ * {@link #close()} skips the unread blocks, i.e. the channel is positioned 
+ * directly behind the end marker afterwards, it is not closed.
+ * 
+ * @author KNIME.com AG, Zurich, Switzerland
+ */
+public class CompressedBlockInputStream extends InputStream {
+    
+    private final ReadableByteChannel m_channel;
+    
+    private final Inflater m_inflater = new Inflater();
+    
+    private final CRC32 m_crc = new CRC32();
+    
+    private final byte[] m_buffer = 
+        new byte[CompressedBlockOutputStream.BLOCK_SIZE];
+    
+    private final ByteBuffer m_header = 
+        ByteBuffer.allocate(CompressedBlockOutputStream.HEADER_SIZE);
+    
+    private byte[] m_compressed = new byte[0];
+    
+    private int m_size;
+    
+    private int m_pos;
+    
+    private boolean m_finished;
+    
+    /**
+     * @param channel the channel to read the blocks from
+     */
+    public CompressedBlockInputStream(final ReadableByteChannel channel) {
+        m_channel = channel;
+    }
+    
+    /** {@inheritDoc} */
+    @Override
+    public int read() throws IOException {
+        if (m_pos == m_size && !readBlock()) {
+            return -1;
+        }
+        return m_buffer[m_pos++] & 0xFF;
+    }
+    
+    /** {@inheritDoc} */
+    @Override
+    public int read(final byte[] b, final int off, final int len) 
+        throws IOException {
+        if (len == 0) {
+            return 0;
+        }
+        if (m_pos == m_size && !readBlock()) {
+            return -1;
+        }
+        int n = Math.min(len, m_size - m_pos);
+        System.arraycopy(m_buffer, m_pos, b, off, n);
+        m_pos += n;
+        return n;
+    }
+    
+    /** {@inheritDoc} */
+    @Override
+    public int available() {
+        return m_size - m_pos;
+    }
+    
+    /**
+     * Skips the remaining blocks up to the end marker. The channel stays 
+     * open.
+     * {@inheritDoc}
+     */
+    @Override
+    public void close() throws IOException {
+        try {
+            while (readBlock()) {
+                m_pos = m_size;
+            }
+        } finally {
+            m_inflater.end();
+        }
+    }
+    
+    private boolean readBlock() throws IOException {
+        if (m_finished) {
+            return false;
+        }
+        m_header.clear();
+        readFully(m_header);
+        m_header.flip();
+        int rawLength = m_header.getInt();
+        int compressedLength = m_header.getInt();
+        int checksum = m_header.getInt();
+        if (rawLength == 0) {
+            m_finished = true;
+            return false;
+        }
+        if (rawLength < 0 || rawLength > m_buffer.length 
+                || compressedLength < 0) {
+            throw new IOException("Corrupt block header");
+        }
+        if (m_compressed.length < compressedLength) {
+            m_compressed = new byte[compressedLength];
+        }
+        readFully(ByteBuffer.wrap(m_compressed, 0, compressedLength));
+        m_inflater.reset();
+        m_inflater.setInput(m_compressed, 0, compressedLength);
+        try {
+            int length = 0;
+            while (length < rawLength && !m_inflater.finished()) {
+                int n = m_inflater.inflate(m_buffer, length, 
+                        rawLength - length);
+                if (n == 0 && m_inflater.needsInput()) {
+                    break;
+                }
+                length += n;
+            }
+            if (length != rawLength) {
+                throw new IOException("Truncated block");
+            }
+        } catch (DataFormatException e) {
+            throw new IOException("Corrupt block: " + e.getMessage());
+        }
+        m_crc.reset();
+        m_crc.update(m_buffer, 0, rawLength);
+        if ((int)m_crc.getValue() != checksum) {
+            throw new IOException("Checksum mismatch in block");
+        }
+        m_size = rawLength;
+        m_pos = 0;
+        return true;
+    }
+    
+    private void readFully(final ByteBuffer buffer) throws IOException {
+        while (buffer.hasRemaining()) {
+            if (m_channel.read(buffer) < 0) {
+                throw new EOFException("Unexpected end of internals");
+            }
+        }
+    }
+
+}
@@ -0,0 +1,177 @@
+/*
+ * ------------------------------------------------------------------------
+  * This source code, its documentation and all appendant files
+ * are protected by copyright law. All rights reserved.
+ *
+ * Copyright, 2008 - 2012
+ * KNIME.com, Zurich, Switzerland
+ *
+ * You may not modify, publish, transmit, transfer or sell, reproduce,
+ * create derivative works from, distribute, perform, display, or in
+ * any way exploit any of the content, in whole or in part, except as
+ * otherwise expressly permitted in writing by the copyright owner or
+ * as specified in the license file distributed with this product.
+ *
+ * If you have any questions please contact the copyright holder:
+ * website: www.knime.com
+ * email: contact@knime.com
+ * ---------------------------------------------------------------------
+ */
+package org.knime.example;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.ByteBuffer;
+import java.nio.channels.WritableByteChannel;
+import java.util.Arrays;
+import java.util.zip.CRC32;
+import java.util.zip.Deflater;
+
+/**
+ * Writes a stream as a sequence of deflated blocks to a channel. Each block
+ * starts with its raw length, its compressed length and the CRC32 checksum
+ * of the raw data. An empty block marks the end of the stream, hence 
+ * several streams can follow each other in one file.
+ * <p>
+ * {@link #close()} finishes the stream but does not close the channel. 
+ * {@link #finishStream()} ends a stream and starts the next one with the 
+ * same buffers.
+ * 
+ * @author KNIME.com AG, Zurich, Switzerland
+ * @see CompressedBlockInputStream
+ */
+public class CompressedBlockOutputStream extends OutputStream {
+    
+    /** The raw size of a block. */
+    static final int BLOCK_SIZE = 1 << 16;
+    
+    /** Size of the block header: raw length, compressed length, checksum. */
+    static final int HEADER_SIZE = 12;
+    
+    private final WritableByteChannel m_channel;
+    
+    private final Deflater m_deflater;
+    
+    private final CRC32 m_crc = new CRC32();
+    
+    private final byte[] m_buffer = new byte[BLOCK_SIZE];
+    
+    private byte[] m_compressed = new byte[BLOCK_SIZE + BLOCK_SIZE / 8];
+    
+    private final ByteBuffer m_header = ByteBuffer.allocate(HEADER_SIZE);
+    
+    private int m_size;
+    
+    private long m_bytesWritten;
+    
+    private boolean m_closed;
+    
+    /**
+     * @param channel the channel to write the blocks to
+     */
+    public CompressedBlockOutputStream(final WritableByteChannel channel) {
+        m_channel = channel;
+        m_deflater = new Deflater(Deflater.BEST_SPEED);
+    }
+    
+    /** {@inheritDoc} */
+    @Override
+    public void write(final int b) throws IOException {
+        if (m_size == BLOCK_SIZE) {
+            writeBlock();
+        }
+        m_buffer[m_size++] = (byte)b;
+    }
+    
+    /** {@inheritDoc} */
+    @Override
+    public void write(final byte[] b, final int off, final int len) 
+        throws IOException {
+        int offset = off;
+        int remaining = len;
+        while (remaining > 0) {
+            if (m_size == BLOCK_SIZE) {
+                writeBlock();
+            }
+            int n = Math.min(remaining, BLOCK_SIZE - m_size);
+            System.arraycopy(b, offset, m_buffer, m_size, n);
+            m_size += n;
+            offset += n;
+            remaining -= n;
+        }
+    }
+    
+    /**
+     * @return the number of bytes written to the channel so far
+     */
+    public long getBytesWritten() {
+        return m_bytesWritten;
+    }
+    
+    /**
+     * Writes the pending data and the end marker. The data written 
+     * afterwards forms the next stream, it reuses the buffers and the 
+     * deflater of this one.
+     * 
+     * @throws IOException if the channel cannot be written
+     */
+    public void finishStream() throws IOException {
+        if (m_size > 0) {
+            writeBlock();
+        }
+        // the end marker
+        writeHeader(0, 0, 0);
+    }
+    
+    /**
+     * Writes the pending data and the end marker. The channel stays open.
+     * {@inheritDoc}
+     */
+    @Override
+    public void close() throws IOException {
+        if (m_closed) {
+            return;
+        }
+        m_closed = true;
+        try {
+            finishStream();
+        } finally {
+            m_deflater.end();
+        }
+    }
+    
+    private void writeBlock() throws IOException {
+        m_crc.reset();
+        m_crc.update(m_buffer, 0, m_size);
+        m_deflater.reset();
+        m_deflater.setInput(m_buffer, 0, m_size);
+        m_deflater.finish();
+        int length = 0;
+        while (!m_deflater.finished()) {
+            if (length == m_compressed.length) {
+                m_compressed = Arrays.copyOf(m_compressed, 
+                        2 * m_compressed.length);
+            }
+            length += m_deflater.deflate(m_compressed, length, 
+                    m_compressed.length - length);
+        }
+        writeHeader(m_size, length, (int)m_crc.getValue());
+        writeFully(ByteBuffer.wrap(m_compressed, 0, length));
+        m_size = 0;
+    }
+    
+    private void writeHeader(final int rawLength, final int compressedLength,
+            final int checksum) throws IOException {
+        m_header.clear();
+        m_header.putInt(rawLength).putInt(compressedLength).putInt(checksum);
+        m_header.flip();
+        writeFully(m_header);
+    }
+    
+    private void writeFully(final ByteBuffer buffer) throws IOException {
+        while (buffer.hasRemaining()) {
+            m_bytesWritten += m_channel.write(buffer);
+        }
+    }
+
+}
@@ -0,0 +1,110 @@
+/*
+ * ------------------------------------------------------------------------
+  * This source code, its documentation and all appendant files
+ * are protected by copyright law. All rights reserved.
+ *
+ * Copyright, 2008 - 2012
+ * KNIME.com, Zurich, Switzerland
+ *
+ * You may not modify, publish, transmit, transfer or sell, reproduce,
+ * create derivative works from, distribute, perform, display, or in
+ * any way exploit any of the content, in whole or in part, except as
+ * otherwise expressly permitted in writing by the copyright owner or
+ * as specified in the license file distributed with this product.
+ *
+ * If you have any questions please contact the copyright holder:
+ * website: www.knime.com
+ * email: contact@knime.com
+ * ---------------------------------------------------------------------
+ */
+package org.knime.example;
+
+/**
+ * Lookup for equidistant breakpoints. The bin is computed directly from the
+ * value and afterwards corrected against the actual breakpoints, so rounding 
+ * errors in the breakpoints cannot change the result compared to a linear 
+ * search. 
+ * 
+ * @author KNIME.com AG, Zurich, Switzerland
+ */
+public class EquidistantBinLookup extends NumericBinLookup {
+    
+    // relative deviation of a breakpoint from its ideal position still
+    // considered equidistant, the correction step takes care of the rest
+    private static final double TOLERANCE = 1E-6;
+    
+    private final double m_first;
+    
+    private final double m_width;
+    
+    private final int m_lastBin;
+    
+    /**
+     * @param breakpoints the equidistant breakpoints in ascending order
+     * @see #isEquidistant(double[])
+     */
+    public EquidistantBinLookup(final double[] breakpoints) {
+        super(breakpoints);
+        if (!isEquidistant(breakpoints)) {
+            throw new IllegalArgumentException(
+                    "Interval bounds are not equidistant!");
+        }
+        // breakpoints with an underflow bin are infinite, i.e. never 
+        // equidistant, the first bin includes its upper bound
+        m_lastBin = breakpoints.length - 2;
+        m_first = breakpoints[0];
+        m_width = (breakpoints[m_lastBin + 1] - m_first) / (m_lastBin + 1);
+    }
+
+    /** {@inheritDoc} */
+    @Override
+    public int getBinIndex(final double value) {
+        if (value <= m_breakpoints[1]) {
+            return 0;
+        }
+        // also true for NaN
+        if (!(value <= m_breakpoints[m_lastBin + 1])) {
+            return NO_BIN;
+        }
+        // value lies behind the first bin, the guess is off by one at most
+        int binNr = (int)Math.ceil((value - m_first) / m_width) - 1;
+        if (binNr > m_lastBin) {
+            binNr = m_lastBin;
+        } else if (binNr < 1) {
+            binNr = 1;
+        }
+        while (value <= m_breakpoints[binNr]) {
+            binNr--;
+        }
+        while (value > m_breakpoints[binNr + 1]) {
+            binNr++;
+        }
+        return binNr;
+    }
+    
+    /**
+     * 
+     * @param breakpoints sorted breakpoints
+     * @return true if there are at least two distinct, finite breakpoints and 
+     * all breakpoints are (up to rounding errors) equally spaced
+     */
+    public static boolean isEquidistant(final double[] breakpoints) {
+        int last = breakpoints.length - 1;
+        if (last < 1) {
+            return false;
+        }
+        double first = breakpoints[0];
+        double width = (breakpoints[last] - first) / last;
+        if (!(width > 0) || Double.isInfinite(width)) {
+            return false;
+        }
+        for (int i = 1; i < last; i++) {
+            double expected = first + i * width;
+            if (Math.abs(breakpoints[i] - expected) > TOLERANCE * width) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+}
@@ -0,0 +1,120 @@
+/*
+ * ------------------------------------------------------------------------
+  * This source code, its documentation and all appendant files
+ * are protected by copyright law. All rights reserved.
+ *
+ * Copyright, 2008 - 2012
+ * KNIME.com, Zurich, Switzerland
+ *
+ * You may not modify, publish, transmit, transfer or sell, reproduce,
+ * create derivative works from, distribute, perform, display, or in
+ * any way exploit any of the content, in whole or in part, except as
+ * otherwise expressly permitted in writing by the copyright owner or
+ * as specified in the license file distributed with this product.
+ *
+ * If you have any questions please contact the copyright holder:
+ * website: www.knime.com
+ * email: contact@knime.com
+ * ---------------------------------------------------------------------
+ */
+package org.knime.example;
+
+/**
+ * Maps the values of integer columns to the bins of a 
+ * {@link NumericBinLookup} without converting them to double, which would
+ * round values beyond 2<sup>53</sup>. Bin <code>i</code> contains the 
+ * integers up to the floor of its upper bound, an underflow bin the integers
+ * below its upper bound; the comparisons are exact. 
+ * If the bins span only a small range of integers the bin of each integer
+ * is looked up in a table, otherwise the bin found for the rounded value 
+ * is corrected by comparing the exact bounds.
+ * 
+ * @author KNIME.com AG, Zurich, Switzerland
+ */
+public final class IntegerBinLookup {
+    
+    /** The largest number of integers covered by a lookup table. */
+    static final int MAX_TABLE_SIZE = 1 << 16;
+    
+    private final NumericBinLookup m_lookup;
+    
+    // the largest integer of each bin, saturated at the range of long
+    private final long[] m_upperBounds;
+    
+    private final int m_lastBin;
+    
+    // the bin of each integer above the first bin, null if the range of 
+    // the bins is too large
+    private final int[] m_table;
+    
+    /**
+     * @param lookup the lookup of the bins, its breakpoints are shared
+     */
+    public IntegerBinLookup(final NumericBinLookup lookup) {
+        m_lookup = lookup;
+        double[] breakpoints = lookup.m_breakpoints;
+        m_lastBin = breakpoints.length - 2;
+        m_upperBounds = new long[m_lastBin + 1];
+        for (int i = 0; i <= m_lastBin; i++) {
+            // the cast saturates beyond the range of long
+            m_upperBounds[i] = (long)Math.floor(breakpoints[i + 1]);
+        }
+        if (lookup.m_underflowBin) {
+            // the lowest integer of the second bin is not in the first one,
+            // below the range of long the first bin stays empty
+            long lowest = (long)Math.ceil(breakpoints[1]);
+            m_upperBounds[0] = 
+                lowest == Long.MIN_VALUE ? Long.MIN_VALUE : lowest - 1;
+        }
+        long range = m_upperBounds[m_lastBin] - m_upperBounds[0];
+        // a negative range is an overflow, i.e. too large anyway
+        if (range >= 0 && range <= MAX_TABLE_SIZE) {
+            m_table = new int[(int)range];
+            int bin = 1;
+            for (int i = 0; i < m_table.length; i++) {
+                long value = m_upperBounds[0] + 1 + i;
+                while (value > m_upperBounds[bin]) {
+                    bin++;
+                }
+                m_table[i] = bin;
+            }
+        } else {
+            m_table = null;
+        }
+    }
+    
+    /**
+     * @param value the integer to find the bin for
+     * @return the number of the bin the value belongs to or 
+     *  {@link NumericBinLookup#NO_BIN} if the value is larger than the last
+     *  breakpoint
+     */
+    public int getBinIndex(final long value) {
+        if (value <= m_upperBounds[0]) {
+            return 0;
+        }
+        if (value > m_upperBounds[m_lastBin]) {
+            return NumericBinLookup.NO_BIN;
+        }
+        if (m_table != null) {
+            return m_table[(int)(value - m_upperBounds[0] - 1)];
+        }
+        // rounding is monotonic, the rounded value is at most a few bins off
+        int bin = m_lookup.getBinIndex((double)value);
+        while (bin > 0 && value <= m_upperBounds[bin - 1]) {
+            bin--;
+        }
+        while (value > m_upperBounds[bin]) {
+            bin++;
+        }
+        return bin;
+    }
+    
+    /**
+     * @return the number of bins
+     */
+    public int getNumberOfBins() {
+        return m_lastBin + 1;
+    }
+
+}
@@ -19,19 +19,27 @@
  */
 package org.knime.example;
 
-import java.awt.Rectangle;
-import java.util.Arrays;
-import java.util.LinkedHashSet;
+import java.io.DataOutput;
+import java.io.IOException;
+import java.lang.ref.SoftReference;
+import java.util.AbstractSet;
+import java.util.Collections;
+import java.util.Iterator;
+import java.util.List;
 import java.util.Set;
 
 import org.knime.core.data.RowKey;
 import org.knime.core.node.InvalidSettingsException;
 import org.knime.core.node.ModelContentRO;
-import org.knime.core.node.ModelContentWO;
 
 /**
  * A small model representing a bin with the rows contained in that bin and 
- * a graphical representation as a rectangle.
+ * a graphical representation as a rectangle. The rows are stored as 
+ * ordinals in a compressed {@link RowOrdinalSet}, their keys are only 
+ * looked up if they are requested. If hiliting is not needed a bin only 
+ * knows the number of its rows. Bins loaded from the internals read their 
+ * rows on first demand. Bins filled under a memory budget write their rows
+ * to a {@link BinMembershipSpill} and merge them when they are requested.
  * 
  * @author KNIME.com AG, Zurich, Switzerland
  */
@@ -41,119 +49,305 @@ import org.knime.core.node.ModelContentWO;
 
 public class NumericBin {
     
+    // internals written by older versions contain the row keys
     private static final String CFG_KEY_CELLS = "rowIds";
     
-    private final Set<RowKey> m_containedRowIds;
+    // null if only the number of rows is known or they are not read yet
+    private volatile RowOrdinalSet m_containedRows;
     
-    private Rectangle m_viewRepresentation;
+    private final RowKeyResolver m_keyResolver;
     
-    private boolean m_isHilite;
+    // reads the rows on first demand, null if they are known from the start
+    private final NumericBinnerInternals m_deferredBy;
     
-    private boolean m_isSelected;
+    private final long m_count;
+    
+    // writes the rows to disk, null if they are kept in memory
+    private final BinMembershipSpill m_spill;
+    
+    private final int m_spillIndex;
+    
+    // all rows of a spilled bin, released if memory gets low
+    private SoftReference<RowOrdinalSet> m_mergedRows;
+    
+    // the number of hilited rows
+    private int m_hiliteCount;
     
     /**
      * Creates a new numeric bin. 
+     * @param keyResolver translates the row ordinals into row keys
+     */
+    public NumericBin(final RowKeyResolver keyResolver) {
+        this(keyResolver, new RowOrdinalSet());
+    }
+    
+    /**
+     * Creates a bin containing the given rows. 
+     * @param keyResolver translates the row ordinals into row keys
+     * @param rowOrdinals the ordinals of the rows in this bin
+     */
+    public NumericBin(final RowKeyResolver keyResolver, 
+            final RowOrdinalSet rowOrdinals) {
+        m_containedRows = rowOrdinals;
+        m_keyResolver = keyResolver;
+        m_deferredBy = null;
+        m_count = -1;
+        m_spill = null;
+        m_spillIndex = -1;
+    }
+    
+    /**
+     * Creates a new numeric bin whose rows are written to disk if the rows 
+     * of all bins of the spill exceed its memory budget.
+     * @param keyResolver translates the row ordinals into row keys
+     * @param spill keeps the rows within the memory budget
+     */
+    public NumericBin(final RowKeyResolver keyResolver, 
+            final BinMembershipSpill spill) {
+        m_containedRows = new RowOrdinalSet();
+        m_keyResolver = keyResolver;
+        m_deferredBy = null;
+        m_count = -1;
+        m_spill = spill;
+        m_spillIndex = spill.register(this);
+    }
+    
+    /**
+     * Creates a bin whose rows are read from the internals on first demand.
+     * @param keyResolver translates the row ordinals into row keys
+     * @param count the number of rows in this bin
+     * @param internals reads the rows
+     */
+    NumericBin(final RowKeyResolver keyResolver, final long count, 
+            final NumericBinnerInternals internals) {
+        m_containedRows = null;
+        m_keyResolver = keyResolver;
+        m_deferredBy = internals;
+        m_count = count;
+        m_spill = null;
+        m_spillIndex = -1;
+    }
+    
+    /**
+     * Creates a bin which only knows the number of its rows, it does not 
+     * support hiliting. 
+     * @param count the number of rows in this bin
      */
-    public NumericBin() {
-        m_containedRowIds = new LinkedHashSet<RowKey>();
+    public NumericBin(final long count) {
+        m_containedRows = null;
+        m_keyResolver = null;
+        m_deferredBy = null;
+        m_count = count;
+        m_spill = null;
+        m_spillIndex = -1;
     }
     
     /**
      * Adds another row to this bin.
-     * @param rowId the row to add to this bin.
+     * @param rowOrdinal the position of the row in the binned table
      */
-    public void addRowToBin(final RowKey rowId) {
-        m_containedRowIds.add(rowId);
+    public void addRowToBin(final int rowOrdinal) {
+        m_containedRows.add(rowOrdinal);
+        if (m_spill != null) {
+            m_mergedRows = null;
+            m_spill.rowAdded(m_spillIndex);
+        }
     }
     
     /**
      * @return the number of rows in this bin.
      */
-    public int getSize() {
-        return m_containedRowIds.size();
+    public long getSize() {
+        RowOrdinalSet rows = m_containedRows;
+        if (rows == null) {
+            return m_count;
+        }
+        if (m_spill != null) {
+            return (long)m_spill.getSpilledCount(m_spillIndex) + rows.size();
+        }
+        return rows.size();
     }
     
     /**
-     * @return the ids of the rows in this bin.
+     * @return true if the rows of this bin are known, i.e. it can be 
+     *  hilited
      */
-    public Set<RowKey> getRowKeys() {
-        return m_containedRowIds;
+    public boolean hasRowKeys() {
+        return (m_containedRows != null || m_deferredBy != null) 
+            && m_keyResolver.hasKeys();
     }
     
     /**
-     * @return the graphical representation as a rectangle.
+     * Reads the rows from the internals if that has not been done yet. 
+     * The rows written to disk are merged with the rows in memory, the
+     * result is kept as long as memory permits.
+     * 
+     * @return the ordinals of the rows in this bin or <code>null</code> if 
+     *  only the number of rows is known
+     * @throws IllegalStateException if the rows written to disk cannot be 
+     *  read
      */
-    public Rectangle getViewRepresentation() {
-        return m_viewRepresentation;
+    public RowOrdinalSet getRowOrdinals() {
+        if (m_containedRows == null && m_deferredBy != null) {
+            m_deferredBy.loadMemberships();
+        }
+        if (m_spill == null || !m_spill.hasRuns(m_spillIndex)) {
+            return m_containedRows;
+        }
+        SoftReference<RowOrdinalSet> merged = m_mergedRows;
+        RowOrdinalSet rows = merged == null ? null : merged.get();
+        if (rows == null) {
+            rows = m_spill.readRows(m_spillIndex, m_containedRows);
+            m_mergedRows = new SoftReference<RowOrdinalSet>(rows);
+        }
+        return rows;
     }
     
     /**
-     * The graphical representation can only be calculated outside with the
-     * knowledge of the number of bins, the maximal and minimal size 
-     * and the available width and height. This is done in the 
-     * {@link NumericBinnerViewPanel#paint(java.awt.Graphics)}
+     * Reads the rows from the internals if that has not been done yet, 
+     * spilled rows are not read.
      * 
-     * @param rectangle the graphical representation
+     * @return true if the rows of this bin are known, false if only their
+     *  number is known
+     * @throws IllegalStateException if the rows cannot be read from the 
+     *  internals
      */
-    public void setViewRepresentation(final Rectangle rectangle) {
-        m_viewRepresentation = rectangle;
+    boolean hasRowOrdinals() {
+        if (m_containedRows == null && m_deferredBy != null) {
+            m_deferredBy.loadMemberships();
+        }
+        return m_containedRows != null;
     }
     
-    // ************* loading and saving of internal representation ***********
+    /**
+     * @return the rows which were not written to disk, i.e. all rows if 
+     *  the bin does not spill; <code>null</code> if only the number of 
+     *  rows is known
+     */
+    RowOrdinalSet getRowsInMemory() {
+        return m_containedRows;
+    }
     
     /**
-     * Adds the IDs of the contained rows to the settings. That's enough
-     * to later on restore the visual representation, since that only depends on
-     * the dimension of the panel and the number of contained rows per bin.
+     * Called by the spill after the rows in memory were written to disk.
+     */
+    void rowsSpilled() {
+        m_containedRows = new RowOrdinalSet();
+        m_mergedRows = null;
+    }
+    
+    /**
+     * Writes the rows like {@link RowOrdinalSet#writeTo(DataOutput)}, the
+     * rows written to disk are copied without keeping them all in memory.
+     * 
+     * @param out the output to write to
+     * @throws IOException if the rows cannot be read or written
+     */
+    void writeRowOrdinals(final DataOutput out) throws IOException {
+        if (m_spill != null && m_spill.hasRuns(m_spillIndex)) {
+            m_spill.writeRows(m_spillIndex, m_containedRows, out);
+        } else {
+            getRowOrdinals().writeTo(out);
+        }
+    }
+    
+    /**
+     * @param internals the internals reading the rows
+     * @return true if the rows of this bin are still to be read by the 
+     *  given internals
+     */
+    boolean isDeferredBy(final NumericBinnerInternals internals) {
+        return m_deferredBy == internals && m_containedRows == null;
+    }
+    
+    /**
+     * @param rowOrdinals the rows read from the internals
+     */
+    void setRowOrdinals(final RowOrdinalSet rowOrdinals) {
+        m_containedRows = rowOrdinals;
+    }
+    
+    /**
+     * The returned set translates the ordinals into keys while it is 
+     * iterated, nothing is copied.
      * 
-     * @param modelContent the model content object to save to.
+     * @return the ids of the rows in this bin, empty if the rows are not 
+     *  known
      */
-    public void saveTo(final ModelContentWO modelContent) {
-        RowKey[] cellArray = new RowKey[m_containedRowIds.size()]; 
-        m_containedRowIds.toArray(cellArray);
-        modelContent.addRowKeyArray(CFG_KEY_CELLS, cellArray);
+    public Set<RowKey> getRowKeys() {
+        final RowOrdinalSet rows = getRowOrdinals();
+        if (rows == null || !m_keyResolver.hasKeys()) {
+            return Collections.emptySet();
+        }
+        return new AbstractSet<RowKey>() {
+            /** {@inheritDoc} */
+            @Override
+            public Iterator<RowKey> iterator() {
+                return m_keyResolver.iterator(rows);
+            }
+            /** {@inheritDoc} */
+            @Override
+            public int size() {
+                return rows.size();
+            }
+            /** {@inheritDoc} */
+            @Override
+            public boolean contains(final Object o) {
+                return o instanceof RowKey && rows.contains(
+                        m_keyResolver.getOrdinal((RowKey)o));
+            }
+        };
     }
     
+    // ************* loading and saving of internal representation ***********
+    
     /**
-     * Loads the contained row IDs.
+     * Loads a bin from the XML internals written by older versions, the 
+     * current format is handled by {@link NumericBinnerInternals}. The XML 
+     * internals contain the row keys instead of the ordinals: they are 
+     * appended to the legacy keys and their positions in that list become 
+     * the ordinals.
      *  
-     * @param modelContent to read contained RowKeys from.
+     * @param modelContent to read contained rows from.
+     * @param keyResolver translates the row ordinals into row keys
+     * @param legacyKeys collects the keys of internals written by older
+     *  versions
+     * @return the loaded bin
      * @throws InvalidSettingsException if the settings are invalid
      */
-    public void loadFrom(final ModelContentRO modelContent) 
+    public static NumericBin loadFrom(final ModelContentRO modelContent, 
+            final RowKeyResolver keyResolver, final List<RowKey> legacyKeys) 
         throws InvalidSettingsException {
-        RowKey[] rkArray = modelContent.getRowKeyArray(CFG_KEY_CELLS);
-        m_containedRowIds.addAll(Arrays.asList(rkArray));
+        NumericBin bin = new NumericBin(keyResolver);
+        for (RowKey key : modelContent.getRowKeyArray(CFG_KEY_CELLS)) {
+            bin.m_containedRows.add(legacyKeys.size());
+            legacyKeys.add(key);
+        }
+        bin.m_containedRows.trim();
+        return bin;
     }
     
     // ************* hilite support *****************
 
     /**
-     * @param isHilite sets the hilite status of this bin.
+     * @param hiliteCount the number of hilited rows in this bin.
      */
-    public void setHilited(final boolean isHilite) {
-        m_isHilite = isHilite;
+    public void setHiliteCount(final int hiliteCount) {
+        m_hiliteCount = hiliteCount;
     }
     
     /**
-     * @return true if this bin contains hilited keys, false otherwise.
+     * @return the number of hilited rows in this bin.
      */
-    public boolean isHilited() {
-        return  m_isHilite;
-    }
-    
-    /**
-     * @return true if this bin is selected. false otherwise.
-     */
-    public boolean isSelected() {
-        return m_isSelected;
+    public int getHiliteCount() {
+        return m_hiliteCount;
     }
     
     /**
-     * @param selected true, if the bin is selected, false otherwise.
+     * @return true if all rows of this bin are hilited, false otherwise.
      */
-    public void setSelected(final boolean selected) {
-        m_isSelected = selected;
+    public boolean isHilited() {
+        return m_hiliteCount > 0 && m_hiliteCount == getSize();
     }
     
 }
@@ -0,0 +1,112 @@
+/*
+ * ------------------------------------------------------------------------
+  * This source code, its documentation and all appendant files
+ * are protected by copyright law. All rights reserved.
+ *
+ * Copyright, 2008 - 2012
+ * KNIME.com, Zurich, Switzerland
+ *
+ * You may not modify, publish, transmit, transfer or sell, reproduce,
+ * create derivative works from, distribute, perform, display, or in
+ * any way exploit any of the content, in whole or in part, except as
+ * otherwise expressly permitted in writing by the copyright owner or
+ * as specified in the license file distributed with this product.
+ *
+ * If you have any questions please contact the copyright holder:
+ * website: www.knime.com
+ * email: contact@knime.com
+ * ---------------------------------------------------------------------
+ */
+package org.knime.example;
+
+/**
+ * Maps a value to the number of the bin it falls into. Bin <code>i</code>
+ * is bounded by the breakpoints <code>i</code> and <code>i + 1</code>.
+ * A value belongs to the first bin whose upper bound is greater or equal to 
+ * the value, hence values below the first breakpoint fall into the first bin.
+ * Values larger than the last breakpoint (and NaN) do not belong to any bin.
+ * If the first breakpoint is negative infinity the first bin is an underflow
+ * bin: it only contains the values below its upper bound, the bound itself 
+ * belongs to the second bin.
+ * <p>
+ * Use {@link #create(double[])} to get the fastest lookup for a given set of 
+ * breakpoints.
+ * 
+ * @author KNIME.com AG, Zurich, Switzerland
+ */
+public abstract class NumericBinLookup {
+    
+    /** Returned by {@link #getBinIndex(double)} if no bin matches. */
+    public static final int NO_BIN = -1;
+    
+    /** The breakpoints of the bins in ascending order. */
+    protected final double[] m_breakpoints;
+    
+    /** True if the first bin excludes its upper bound. */
+    protected final boolean m_underflowBin;
+    
+    /**
+     * @param breakpoints the breakpoints of the bins in ascending order
+     */
+    protected NumericBinLookup(final double[] breakpoints) {
+        m_breakpoints = breakpoints;
+        m_underflowBin = isUnderflowBin(breakpoints);
+    }
+    
+    /**
+     * @param breakpoints the breakpoints of the bins in ascending order
+     * @return true if the first bin only contains the values below its upper
+     *  bound, i.e. the first breakpoint is negative infinity and there is 
+     *  more than one bin
+     */
+    static boolean isUnderflowBin(final double[] breakpoints) {
+        return breakpoints.length > 2 
+            && breakpoints[0] == Double.NEGATIVE_INFINITY;
+    }
+    
+    /**
+     * 
+     * @param value the value to find the bin for
+     * @return the number of the bin the value belongs to or {@link #NO_BIN}
+     * if the value is larger than the last breakpoint
+     */
+    public abstract int getBinIndex(final double value);
+    
+    /**
+     * 
+     * @return the number of bins
+     */
+    public int getNumberOfBins() {
+        return m_breakpoints.length - 1;
+    }
+    
+    /**
+     * Creates the lookup for the given breakpoints. For equidistant 
+     * breakpoints the bin is computed arithmetically, otherwise a binary 
+     * search is used.
+     * 
+     * @param breakpoints the breakpoints of the bins in ascending order, 
+     *  at least two. The array is not copied and must not be changed
+     *  afterwards.
+     * @return the lookup for the given breakpoints
+     */
+    public static NumericBinLookup create(final double[] breakpoints) {
+        if (breakpoints == null) {
+            throw new NullPointerException("Interval bounds must not be null!");
+        }
+        if (breakpoints.length < 2) {
+            throw new IllegalArgumentException(
+                    "At least two interval bounds are required!");
+        }
+        for (int i = 1; i < breakpoints.length; i++) {
+            if (!(breakpoints[i - 1] <= breakpoints[i])) {
+                throw new IllegalArgumentException(
+                        "Interval bounds must be sorted in ascending order!");
+            }
+        }
+        if (EquidistantBinLookup.isEquidistant(breakpoints)) {
+            return new EquidistantBinLookup(breakpoints);
+        }
+        return new SortedBinLookup(breakpoints);
+    }
+}
@@ -19,33 +19,141 @@
  */
 package org.knime.example;
 
-import java.util.ArrayList;
-import java.util.List;
-
+import org.knime.core.node.InvalidSettingsException;
+import org.knime.core.node.ModelContentRO;
 import org.knime.core.node.ModelContentWO;
 
 /**
  * Represents the external model of the NumericBinner Node.
- * Stores the lower and upper bound for each bin.
+ * Stores the breakpoints of the bins in one immutable array, bin 
+ * <code>i</code> ranges from breakpoint <code>i</code> to breakpoint 
+ * <code>i + 1</code>. The upper bound belongs to the bin, except for an 
+ * underflow bin starting at negative infinity (see 
+ * {@link NumericBinLookup}).
  * 
  * @author KNIME.com AG, Zurich, Switzerland
  */
 public class NumericBinModel {
     
-    private static final String INTERVAL = "interval";
-    private static final String LOWER_BOUND = "lowerBound";
-    private static final String UPPER_BOUND = "upperBound";
-    private static final String NUMBER_OF_BINS = "numberOfBins";
+    private static final String BREAKPOINTS = "breakpoints";
+    
+    private final double[] m_breakpoints;
     
+    // created lazily, shares the breakpoints
+    private NumericBinLookup m_lookup;
     
-    private List<Interval> m_intervals;
+    // created lazily for integer columns
+    private IntegerBinLookup m_integerLookup;
     
     /**
      * A NumericBin model represents the intervals making up the bins. 
      *
+     * @param breakpoints the breakpoints in ascending order, at least two.
+     *  The array is copied.
+     */
+    public NumericBinModel(final double[] breakpoints) {
+        if (breakpoints == null) {
+            throw new NullPointerException("Breakpoints must not be null!");
+        }
+        if (breakpoints.length < 2) {
+            throw new IllegalArgumentException(
+                    "At least two breakpoints are required!");
+        }
+        for (int i = 1; i < breakpoints.length; i++) {
+            if (!(breakpoints[i - 1] <= breakpoints[i])) {
+                throw new IllegalArgumentException(
+                        "Breakpoints must be sorted in ascending order!");
+            }
+        }
+        m_breakpoints = breakpoints.clone();
+    }
+    
+    /**
+     * Creates a model with equidistant bins.
+     * 
+     * @param lowerBound the lower bound of the first bin, finite
+     * @param upperBound the upper bound of the last bin, finite
+     * @param numberOfBins the number of bins
+     * @return the model with equidistant bins
+     */
+    public static NumericBinModel createEquidistant(final double lowerBound,
+            final double upperBound, final int numberOfBins) {
+        if (numberOfBins < 1) {
+            throw new IllegalArgumentException(
+                    "At least one bin is required!");
+        }
+        if (Double.isNaN(lowerBound) || Double.isInfinite(lowerBound)
+                || Double.isNaN(upperBound) || Double.isInfinite(upperBound)) {
+            throw new IllegalArgumentException("Equidistant bins need finite "
+                    + "bounds, got " + lowerBound + " and " + upperBound);
+        }
+        double[] breakpoints = new double[numberOfBins + 1];
+        double interval = (upperBound - lowerBound) / numberOfBins;
+        for (int i = 0; i < numberOfBins; i++) {
+            breakpoints[i] = lowerBound + i * interval;
+        }
+        // avoid rounding errors: the maximum must fall into the last bin
+        breakpoints[numberOfBins] = upperBound;
+        return new NumericBinModel(breakpoints);
+    }
+
+    /**
+     * Creates a model with equidistant bins between fixed bounds and two 
+     * outlier bins: bin 0 contains the values below the lower bound, the 
+     * last bin the values above the upper bound. The regular bins are 
+     * <code>1</code> to <code>numberOfBins</code>, the lower bound itself 
+     * belongs to the first of them.
+     * 
+     * @param lowerBound the lower bound of the first regular bin
+     * @param upperBound the upper bound of the last regular bin
+     * @param numberOfBins the number of regular bins
+     * @return the model with <code>numberOfBins + 2</code> bins
      */
-    public NumericBinModel() {
-        m_intervals = new ArrayList<Interval>();
+    public static NumericBinModel createWithOutlierBins(
+            final double lowerBound, final double upperBound, 
+            final int numberOfBins) {
+        return createEquidistant(lowerBound, upperBound, numberOfBins)
+            .withOutlierBins();
+    }
+    
+    /**
+     * Adds two outlier bins: the new bin 0 contains the values below the 
+     * first breakpoint, the new last bin the values above the last 
+     * breakpoint. The first breakpoint itself belongs to the first bin of 
+     * this model, which becomes bin 1; the breakpoints keep the bound as 
+     * it is, the lookup excludes it from the underflow bin.
+     * 
+     * @return a model with two more bins
+     */
+    public NumericBinModel withOutlierBins() {
+        int length = m_breakpoints.length;
+        double[] breakpoints = new double[length + 2];
+        breakpoints[0] = Double.NEGATIVE_INFINITY;
+        System.arraycopy(m_breakpoints, 0, breakpoints, 1, length);
+        breakpoints[length + 1] = Double.POSITIVE_INFINITY;
+        return new NumericBinModel(breakpoints);
+    }
+
+    /**
+     * Creates a model whose bins contain (approximately) the same number
+     * of values. The breakpoints are the estimated quantiles of the values.
+     * 
+     * @param sketch the sketch of the values, must not be empty
+     * @param numberOfBins the number of bins
+     * @return the model with equal frequency bins
+     */
+    public static NumericBinModel createEqualFrequency(
+            final QuantileSketch sketch, final int numberOfBins) {
+        if (numberOfBins < 1) {
+            throw new IllegalArgumentException(
+                    "At least one bin is required!");
+        }
+        double[] fractions = new double[numberOfBins + 1];
+        for (int i = 0; i < numberOfBins; i++) {
+            fractions[i] = (double)i / numberOfBins;
+        }
+        fractions[numberOfBins] = 1;
+        return new NumericBinModel(sketch.getQuantiles(fractions));
     }
 
     /**
@@ -55,7 +163,8 @@ public class NumericBinModel {
      * @return the lower bound of the specified interval.
      */
     public double getLowerBoundForInterval(final int binNumber) {
-        return m_intervals.get(binNumber).getLowerBound();
+        checkBinNumber(binNumber);
+        return m_breakpoints[binNumber];
     }
 
     /**
@@ -65,7 +174,40 @@ public class NumericBinModel {
      * @return the upper bound of the specified interval.
      */
     public double getUpperBoundForInterval(final int binNumber) {
-        return m_intervals.get(binNumber).getUpperBound();
+        checkBinNumber(binNumber);
+        return m_breakpoints[binNumber + 1];
+    }
+    
+    /**
+     * A bin contains its lower bound only if it is the first bin or follows
+     * an underflow bin, as decided by the {@link NumericBinLookup}.
+     * 
+     * @param binNumber the number of the bin
+     * @return true if the lower bound belongs to the specified interval
+     */
+    public boolean containsLowerBound(final int binNumber) {
+        checkBinNumber(binNumber);
+        boolean underflow = NumericBinLookup.isUnderflowBin(m_breakpoints);
+        return binNumber == (underflow ? 1 : 0);
+    }
+    
+    /**
+     * 
+     * @param binNumber the number of the bin
+     * @return true if the upper bound belongs to the specified interval, 
+     * i.e. the bin is not an underflow bin
+     */
+    public boolean containsUpperBound(final int binNumber) {
+        checkBinNumber(binNumber);
+        return binNumber > 0 || !NumericBinLookup.isUnderflowBin(m_breakpoints);
+    }
+    
+    private void checkBinNumber(final int binNumber) {
+        if (binNumber < 0 || binNumber >= getNumberOfBins()) {
+            throw new IndexOutOfBoundsException("Bin " + binNumber 
+                    + " does not exist, number of bins: " 
+                    + getNumberOfBins());
+        }
     }
     
     /**
@@ -73,71 +215,87 @@ public class NumericBinModel {
      * @return the number of bins, i.e. intervals.
      */
     public int getNumberOfBins() {
-        return m_intervals.size();
+        return m_breakpoints.length - 1;
     }
     
-
     /**
-     * Adds an interval to this model.
-     * @param lowerBound the lower bound of the interval
-     * @param upperBound the upper bound of the interval
+     * 
+     * @return a copy of the breakpoints
      */
-    public void addInterval(final double lowerBound, final double upperBound) {
-        Interval interval = new Interval(lowerBound, upperBound);
-        m_intervals.add(interval);
+    public double[] getBreakpoints() {
+        return m_breakpoints.clone();
     }
     
+    /**
+     * 
+     * @return the lookup finding the bin for a value, it works directly on
+     * the breakpoints of this model
+     */
+    public NumericBinLookup getLookup() {
+        if (m_lookup == null) {
+            m_lookup = NumericBinLookup.create(m_breakpoints);
+        }
+        return m_lookup;
+    }
     
     /**
-     * Saves this model to the model content.
-     * @param modelContent the model content to save to
+     * 
+     * @return the lookup finding the bin for the value of an integer 
+     * column without rounding it to double
      */
-    public void saveTo(final ModelContentWO modelContent) {
-        modelContent.addInt(NUMBER_OF_BINS, m_intervals.size());
-        int intervalNr = 0;
-        for (Interval interval : m_intervals) {
-            ModelContentWO intervalModel = modelContent.addModelContent(
-                    INTERVAL + intervalNr++);
-            intervalModel.addDouble(LOWER_BOUND, interval.getLowerBound());
-            intervalModel.addDouble(UPPER_BOUND, interval.getUpperBound());
+    public IntegerBinLookup getIntegerLookup() {
+        if (m_integerLookup == null) {
+            m_integerLookup = new IntegerBinLookup(getLookup());
         }
+        return m_integerLookup;
     }
     
     /**
-     * This class represents an interval of a bin.
+     * The upper bound of the last bin is rounded to double, an integer 
+     * beyond 2<sup>53</sup> can be larger than its rounded value. 
      * 
-     * @author Fabian Dill, University of Konstanz
-     */
-    public final class Interval {
-        
-        private final double m_lowerBound;
-        private final double m_upperBound;
-        
-        /** 
-         * Creats an interval with a lower and an upper bound.
-         * @param lowerBound the lower bound of the interval
-         * @param upperBound the upper bound of the interval
-         */
-        public Interval(final double lowerBound, final double upperBound) {
-            m_lowerBound = lowerBound;
-            m_upperBound = upperBound;
+     * @param value the largest value of an integer column
+     * @return this model if the value falls into the last bin, otherwise 
+     * a model whose last upper bound is raised to the next double 
+     * not below the value
+     */
+    public NumericBinModel coverInteger(final long value) {
+        int last = m_breakpoints.length - 1;
+        double upperBound = m_breakpoints[last];
+        // the cast saturates, i.e. nothing is above 2^63
+        if ((long)Math.floor(upperBound) >= value) {
+            return this;
         }
-        
-        /**
-         * 
-         * @return the lower bound of the interval
-         */
-        public double getLowerBound() {
-            return m_lowerBound;
+        double[] breakpoints = m_breakpoints.clone();
+        while ((long)Math.floor(upperBound) < value) {
+            upperBound = Math.nextUp(upperBound);
         }
-        
-        /**
-         * 
-         * @return the upper ound of the interval
-         */
-        public double getUpperBound() {
-            return m_upperBound;
+        breakpoints[last] = upperBound;
+        return new NumericBinModel(breakpoints);
+    }
+    
+    /**
+     * Saves this model to the model content.
+     * @param modelContent the model content to save to
+     */
+    public void saveTo(final ModelContentWO modelContent) {
+        modelContent.addDoubleArray(BREAKPOINTS, m_breakpoints);
+    }
+    
+    /**
+     * Loads a model from the model content.
+     * @param modelContent the model content to load from
+     * @return the loaded model
+     * @throws InvalidSettingsException if the model content does not contain
+     *  valid breakpoints
+     */
+    public static NumericBinModel loadFrom(final ModelContentRO modelContent) 
+        throws InvalidSettingsException {
+        double[] breakpoints = modelContent.getDoubleArray(BREAKPOINTS);
+        try {
+            return new NumericBinModel(breakpoints);
+        } catch (RuntimeException e) {
+            throw new InvalidSettingsException(e.getMessage(), e);
         }
     }
 }
-
@@ -0,0 +1,141 @@
+/*
+ * ------------------------------------------------------------------------
+  * This source code, its documentation and all appendant files
+ * are protected by copyright law. All rights reserved.
+ *
+ * Copyright, 2008 - 2012
+ * KNIME.com, Zurich, Switzerland
+ *
+ * You may not modify, publish, transmit, transfer or sell, reproduce,
+ * create derivative works from, distribute, perform, display, or in
+ * any way exploit any of the content, in whole or in part, except as
+ * otherwise expressly permitted in writing by the copyright owner or
+ * as specified in the license file distributed with this product.
+ *
+ * If you have any questions please contact the copyright holder:
+ * website: www.knime.com
+ * email: contact@knime.com
+ * ---------------------------------------------------------------------
+ */
+package org.knime.example;
+
+import javax.swing.JComponent;
+import javax.swing.JScrollPane;
+import javax.swing.JTextArea;
+
+import org.knime.core.node.CanceledExecutionException;
+import org.knime.core.node.ExecutionMonitor;
+import org.knime.core.node.InvalidSettingsException;
+import org.knime.core.node.ModelContentRO;
+import org.knime.core.node.ModelContentWO;
+import org.knime.core.node.port.AbstractSimplePortObject;
+import org.knime.core.node.port.PortObjectSpec;
+import org.knime.core.node.port.PortType;
+
+/**
+ * Transfers the bins learned by the NumericBinner node: the 
+ * {@link NumericBinModel} of each binned column. The NumericBinner Apply
+ * node bins new data with them without looking at its domain.
+ * 
+ * @author KNIME.com AG, Zurich, Switzerland
+ */
+public class NumericBinModelPortObject extends AbstractSimplePortObject {
+    
+    /** The type of this port. */
+    public static final PortType TYPE = 
+        new PortType(NumericBinModelPortObject.class);
+    
+    private static final String COLUMN_MODEL = "columnModel";
+    
+    private NumericBinModelPortObjectSpec m_spec;
+    
+    private NumericBinModel[] m_models;
+    
+    /**
+     * Creates an empty port object, used by the framework before it is 
+     * loaded.
+     */
+    public NumericBinModelPortObject() {
+        // loaded later
+    }
+    
+    /**
+     * @param columnNames the names of the binned columns
+     * @param models the bins of each column
+     */
+    public NumericBinModelPortObject(final String[] columnNames, 
+            final NumericBinModel[] models) {
+        int[] numbersOfBins = new int[models.length];
+        for (int c = 0; c < models.length; c++) {
+            numbersOfBins[c] = models[c].getNumberOfBins();
+        }
+        m_spec = new NumericBinModelPortObjectSpec(columnNames, numbersOfBins);
+        m_models = models.clone();
+    }
+    
+    /**
+     * @param column the position of the column in the binned columns
+     * @return the bins of the column
+     */
+    public NumericBinModel getBinModel(final int column) {
+        return m_models[column];
+    }
+    
+    /** {@inheritDoc} */
+    @Override
+    public NumericBinModelPortObjectSpec getSpec() {
+        return m_spec;
+    }
+    
+    /** {@inheritDoc} */
+    @Override
+    public String getSummary() {
+        return "Bins of " + m_models.length + " column(s)";
+    }
+    
+    /** {@inheritDoc} */
+    @Override
+    public JComponent[] getViews() {
+        StringBuilder text = new StringBuilder();
+        String[] columnNames = m_spec.getColumnNames();
+        for (int c = 0; c < m_models.length; c++) {
+            NumericBinModel model = m_models[c];
+            int last = model.getNumberOfBins() - 1;
+            text.append(columnNames[c]).append(": ")
+                .append(model.getNumberOfBins()).append(" bins in [")
+                .append(model.getLowerBoundForInterval(0)).append(", ")
+                .append(model.getUpperBoundForInterval(last)).append("]\n");
+        }
+        JTextArea area = new JTextArea(text.toString());
+        area.setEditable(false);
+        JScrollPane view = new JScrollPane(area);
+        view.setName("Bin Model");
+        return new JComponent[]{view};
+    }
+    
+    /** {@inheritDoc} */
+    @Override
+    protected void save(final ModelContentWO model, 
+            final ExecutionMonitor exec) throws CanceledExecutionException {
+        for (int c = 0; c < m_models.length; c++) {
+            m_models[c].saveTo(model.addModelContent(COLUMN_MODEL + c));
+        }
+    }
+    
+    /** {@inheritDoc} */
+    @Override
+    protected void load(final ModelContentRO model, 
+            final PortObjectSpec spec, final ExecutionMonitor exec)
+            throws InvalidSettingsException, CanceledExecutionException {
+        m_spec = (NumericBinModelPortObjectSpec)spec;
+        m_models = new NumericBinModel[m_spec.getNumbersOfBins().length];
+        for (int c = 0; c < m_models.length; c++) {
+            m_models[c] = NumericBinModel.loadFrom(
+                    model.getModelContent(COLUMN_MODEL + c));
+            if (m_models[c].getNumberOfBins() != m_spec.getNumberOfBins(c)) {
+                throw new InvalidSettingsException("Bin model of column " 
+                        + c + " does not match its spec");
+            }
+        }
+    }
+}
@@ -0,0 +1,119 @@
+/*
+ * ------------------------------------------------------------------------
+  * This source code, its documentation and all appendant files
+ * are protected by copyright law. All rights reserved.
+ *
+ * Copyright, 2008 - 2012
+ * KNIME.com, Zurich, Switzerland
+ *
+ * You may not modify, publish, transmit, transfer or sell, reproduce,
+ * create derivative works from, distribute, perform, display, or in
+ * any way exploit any of the content, in whole or in part, except as
+ * otherwise expressly permitted in writing by the copyright owner or
+ * as specified in the license file distributed with this product.
+ *
+ * If you have any questions please contact the copyright holder:
+ * website: www.knime.com
+ * email: contact@knime.com
+ * ---------------------------------------------------------------------
+ */
+package org.knime.example;
+
+import javax.swing.JComponent;
+
+import org.knime.core.node.InvalidSettingsException;
+import org.knime.core.node.ModelContentRO;
+import org.knime.core.node.ModelContentWO;
+import org.knime.core.node.port.AbstractSimplePortObjectSpec;
+
+/**
+ * The spec of a {@link NumericBinModelPortObject}: the names of the binned
+ * columns and their number of bins. It is known when the NumericBinner 
+ * node is configured, hence nodes applying the bins can derive their 
+ * output spec without the breakpoints.
+ * 
+ * @author KNIME.com AG, Zurich, Switzerland
+ */
+public class NumericBinModelPortObjectSpec 
+        extends AbstractSimplePortObjectSpec {
+    
+    private static final String COLUMN_NAMES = "columnNames";
+    
+    private static final String NUMBERS_OF_BINS = "numbersOfBins";
+    
+    private String[] m_columnNames;
+    
+    private int[] m_numbersOfBins;
+    
+    /**
+     * Creates an empty spec, used by the framework before it is loaded.
+     */
+    public NumericBinModelPortObjectSpec() {
+        this(new String[0], new int[0]);
+    }
+    
+    /**
+     * @param columnNames the names of the binned columns
+     * @param numbersOfBins the number of bins of each column
+     */
+    public NumericBinModelPortObjectSpec(final String[] columnNames, 
+            final int[] numbersOfBins) {
+        if (columnNames.length != numbersOfBins.length) {
+            throw new IllegalArgumentException("Number of bins required for "
+                    + columnNames.length + " columns, got " 
+                    + numbersOfBins.length);
+        }
+        m_columnNames = columnNames.clone();
+        m_numbersOfBins = numbersOfBins.clone();
+    }
+    
+    /**
+     * @return a copy of the names of the binned columns
+     */
+    public String[] getColumnNames() {
+        return m_columnNames.clone();
+    }
+    
+    /**
+     * @param column the position of the column in the binned columns
+     * @return the number of bins of the column
+     */
+    public int getNumberOfBins(final int column) {
+        return m_numbersOfBins[column];
+    }
+    
+    /**
+     * @return a copy of the number of bins of each column
+     */
+    public int[] getNumbersOfBins() {
+        return m_numbersOfBins.clone();
+    }
+    
+    /** {@inheritDoc} */
+    @Override
+    protected void save(final ModelContentWO model) {
+        model.addStringArray(COLUMN_NAMES, m_columnNames);
+        model.addIntArray(NUMBERS_OF_BINS, m_numbersOfBins);
+    }
+    
+    /** {@inheritDoc} */
+    @Override
+    protected void load(final ModelContentRO model) 
+        throws InvalidSettingsException {
+        String[] columnNames = model.getStringArray(COLUMN_NAMES);
+        int[] numbersOfBins = model.getIntArray(NUMBERS_OF_BINS);
+        if (columnNames.length != numbersOfBins.length) {
+            throw new InvalidSettingsException("Number of bins stored for "
+                    + numbersOfBins.length + " instead of " 
+                    + columnNames.length + " columns");
+        }
+        m_columnNames = columnNames;
+        m_numbersOfBins = numbersOfBins;
+    }
+    
+    /** {@inheritDoc} */
+    @Override
+    public JComponent[] getViews() {
+        return new JComponent[0];
+    }
+}
@@ -0,0 +1,242 @@
+/*
+ * ------------------------------------------------------------------------
+  * This source code, its documentation and all appendant files
+ * are protected by copyright law. All rights reserved.
+ *
+ * Copyright, 2008 - 2012
+ * KNIME.com, Zurich, Switzerland
+ *
+ * You may not modify, publish, transmit, transfer or sell, reproduce,
+ * create derivative works from, distribute, perform, display, or in
+ * any way exploit any of the content, in whole or in part, except as
+ * otherwise expressly permitted in writing by the copyright owner or
+ * as specified in the license file distributed with this product.
+ *
+ * If you have any questions please contact the copyright holder:
+ * website: www.knime.com
+ * email: contact@knime.com
+ * ---------------------------------------------------------------------
+ */
+package org.knime.example;
+
+import java.io.File;
+import java.io.IOException;
+
+import org.knime.core.data.DataColumnSpec;
+import org.knime.core.data.DataRow;
+import org.knime.core.data.DataTableSpec;
+import org.knime.core.data.DoubleValue;
+import org.knime.core.data.append.AppendedColumnRow;
+import org.knime.core.data.container.ColumnRearranger;
+import org.knime.core.node.BufferedDataTable;
+import org.knime.core.node.CanceledExecutionException;
+import org.knime.core.node.ExecutionContext;
+import org.knime.core.node.ExecutionMonitor;
+import org.knime.core.node.InvalidSettingsException;
+import org.knime.core.node.NodeModel;
+import org.knime.core.node.NodeSettingsRO;
+import org.knime.core.node.NodeSettingsWO;
+import org.knime.core.node.port.PortObject;
+import org.knime.core.node.port.PortObjectSpec;
+import org.knime.core.node.port.PortType;
+import org.knime.core.node.streamable.InputPortRole;
+import org.knime.core.node.streamable.OutputPortRole;
+import org.knime.core.node.streamable.PartitionInfo;
+import org.knime.core.node.streamable.PortInput;
+import org.knime.core.node.streamable.PortObjectInput;
+import org.knime.core.node.streamable.PortOutput;
+import org.knime.core.node.streamable.RowInput;
+import org.knime.core.node.streamable.RowOutput;
+import org.knime.core.node.streamable.StreamableOperator;
+
+/**
+ * This is the model implementation of NumericBinner Apply.
+ * Bins new data with the bins learned by a NumericBinner node. The 
+ * breakpoints are fixed, hence the data is binned in a single pass 
+ * without determining its domain and can be streamed.
+ *
+ * @author KNIME.com AG, Zurich, Switzerland
+ */
+public class NumericBinnerApplyNodeModel extends NodeModel {
+    
+    /** Constant for the inport index of the bin model. */
+    public static final int MODEL_PORT = 0;
+    
+    /** Constant for the inport index of the data to bin. */
+    public static final int DATA_PORT = 1;
+    
+    /**
+     * Constructor for the node model with one in-port for the bin model,
+     * one in-port for the data to bin and one out-port for the input data
+     * with an additional column per binned column.
+     */
+    protected NumericBinnerApplyNodeModel() {
+        super(new PortType[]{NumericBinModelPortObject.TYPE, 
+                BufferedDataTable.TYPE}, 
+                new PortType[]{BufferedDataTable.TYPE});
+    }
+
+    /** {@inheritDoc} */
+    @Override
+    protected PortObject[] execute(final PortObject[] inObjects,
+            final ExecutionContext exec) throws Exception {
+        NumericBinModelPortObject model = 
+            (NumericBinModelPortObject)inObjects[MODEL_PORT];
+        BufferedDataTable inData = (BufferedDataTable)inObjects[DATA_PORT];
+        ColumnRearranger rearranger = 
+            new ColumnRearranger(inData.getDataTableSpec());
+        rearranger.append(
+                createCellFactory(model, inData.getDataTableSpec()));
+        return new PortObject[]{exec.createColumnRearrangeTable(
+                inData, rearranger, exec)};
+    }
+    
+    /**
+     * @param model the bins of each column
+     * @param inSpec the spec of the data to bin
+     * @return the cell factory appending the bin numbers, it only counts 
+     *  the rows per bin
+     */
+    private static NumericBinnerCellFactory createCellFactory(
+            final NumericBinModelPortObject model, 
+            final DataTableSpec inSpec) {
+        NumericBinModelPortObjectSpec spec = model.getSpec();
+        String[] columns = spec.getColumnNames();
+        NumericColumnBinner[] binners = 
+            new NumericColumnBinner[columns.length];
+        for (int c = 0; c < columns.length; c++) {
+            // the lookup of the model is built once and shared
+            binners[c] = new NumericColumnBinner(model.getBinModel(c), 
+                    inSpec.findColumnIndex(columns[c]), null);
+        }
+        return new NumericBinnerCellFactory(
+                NumericBinnerNodeModel.createOutputColumnSpecs(
+                        columns, spec.getNumbersOfBins()), binners);
+    }
+    
+    // ************* streaming ****************
+    
+    /** {@inheritDoc} */
+    @Override
+    public InputPortRole[] getInputPortRoles() {
+        // the bins are read completely, the rows are independent of each
+        // other
+        return new InputPortRole[]{InputPortRole.NONDISTRIBUTED_NONSTREAMABLE,
+                InputPortRole.DISTRIBUTED_STREAMABLE};
+    }
+    
+    /** {@inheritDoc} */
+    @Override
+    public OutputPortRole[] getOutputPortRoles() {
+        return new OutputPortRole[]{OutputPortRole.DISTRIBUTED};
+    }
+    
+    /** {@inheritDoc} */
+    @Override
+    public StreamableOperator createStreamableOperator(
+            final PartitionInfo partitionInfo, 
+            final PortObjectSpec[] inSpecs) throws InvalidSettingsException {
+        return new StreamableOperator() {
+            /** {@inheritDoc} */
+            @Override
+            public void runFinal(final PortInput[] inputs, 
+                    final PortOutput[] outputs, final ExecutionContext exec)
+                    throws Exception {
+                NumericBinModelPortObject model = (NumericBinModelPortObject)
+                    ((PortObjectInput)inputs[MODEL_PORT]).getPortObject();
+                RowInput input = (RowInput)inputs[DATA_PORT];
+                NumericBinnerCellFactory cellFactory = 
+                    createCellFactory(model, input.getDataTableSpec());
+                RowOutput output = (RowOutput)outputs[0];
+                long rowNr = 0;
+                DataRow row;
+                while ((row = input.poll()) != null) {
+                    output.push(new AppendedColumnRow(
+                            row, cellFactory.getCells(row)));
+                    if (++rowNr % NumericDomainCalculator.CHUNK_SIZE == 0) {
+                        exec.checkCanceled();
+                        exec.setMessage("Binned row " + rowNr);
+                    }
+                }
+                input.close();
+                output.close();
+            }
+        };
+    }
+
+    /** {@inheritDoc} */
+    @Override
+    protected PortObjectSpec[] configure(final PortObjectSpec[] inSpecs)
+            throws InvalidSettingsException {
+        NumericBinModelPortObjectSpec modelSpec = 
+            (NumericBinModelPortObjectSpec)inSpecs[MODEL_PORT];
+        DataTableSpec inSpec = (DataTableSpec)inSpecs[DATA_PORT];
+        String[] columns = modelSpec.getColumnNames();
+        for (String column : columns) {
+            DataColumnSpec columnSpec = inSpec.getColumnSpec(column);
+            // the data must contain each binned column
+            if (columnSpec == null) {
+                throw new InvalidSettingsException("Input table contains not "
+                        + "the binned column " + column + ".");
+            }
+            if (!columnSpec.getType().isCompatible(DoubleValue.class)) {
+                throw new InvalidSettingsException("Column " + column 
+                        + " is not numeric.");
+            }
+        }
+        DataColumnSpec[] newColumnSpecs = 
+            NumericBinnerNodeModel.createOutputColumnSpecs(
+                    columns, modelSpec.getNumbersOfBins());
+        for (DataColumnSpec newColumnSpec : newColumnSpecs) {
+            if (inSpec.containsName(newColumnSpec.getName())) {
+                throw new InvalidSettingsException("Input table already "
+                        + "contains a column named " 
+                        + newColumnSpec.getName() + ".");
+            }
+        }
+        return new PortObjectSpec[]{new DataTableSpec(
+                inSpec, new DataTableSpec(newColumnSpecs))};
+    }
+
+    /** {@inheritDoc} */
+    @Override
+    protected void reset() {
+        // no internals
+    }
+
+    /** {@inheritDoc} */
+    @Override
+    protected void saveSettingsTo(final NodeSettingsWO settings) {
+        // no settings, the bins define the columns
+    }
+
+    /** {@inheritDoc} */
+    @Override
+    protected void loadValidatedSettingsFrom(final NodeSettingsRO settings)
+            throws InvalidSettingsException {
+        // no settings
+    }
+
+    /** {@inheritDoc} */
+    @Override
+    protected void validateSettings(final NodeSettingsRO settings)
+            throws InvalidSettingsException {
+        // no settings
+    }
+
+    /** {@inheritDoc} */
+    @Override
+    protected void loadInternals(final File internDir,
+            final ExecutionMonitor exec) throws IOException,
+            CanceledExecutionException {
+        // no internals
+    }
+
+    /** {@inheritDoc} */
+    @Override
+    protected void saveInternals(final File internDir,
+            final ExecutionMonitor exec) throws IOException,
+            CanceledExecutionException {
+        // no internals
+    }
+}
@@ -19,17 +19,14 @@
  */
 package org.knime.example;
 
-import java.util.List;
-
 import org.knime.core.data.DataCell;
 import org.knime.core.data.DataColumnSpec;
 import org.knime.core.data.DataRow;
-import org.knime.core.data.DataType;
-import org.knime.core.data.DoubleValue;
-import org.knime.core.data.container.SingleCellFactory;
-import org.knime.core.data.def.IntCell;
+import org.knime.core.data.container.AbstractCellFactory;
 
 /**
+ * Appends one column with the bin numbers for each binned column. All 
+ * columns are binned in the same pass over the table.
  * 
  * @author KNIME.com AG, Zurich, Switzerland
  */
@@ -37,61 +34,46 @@ import org.knime.core.data.def.IntCell;
 
 
 
-public class NumericBinnerCellFactory extends SingleCellFactory {
+public class NumericBinnerCellFactory extends AbstractCellFactory {
 
-    private final List<Double> m_intervalUpperBounds;
-    
-    private final int m_colIndex;
+    private final NumericColumnBinner[] m_binners;
     
-    private final NumericBin[] m_bins;
+    // the position of the next row in the table
+    private int m_rowOrdinal;
     
 
     /**
      * Create new numeric binner factory.
-     * @param newColSpec the column spec of the column with the binning 
-     *  information.
-     * @param intervalUpperBounds the upper interval bounds of the bins
-     * @param columnIndex the selected column index.
-     * @param bins the representation of the bins.
+     * @param newColSpecs the column specs of the columns with the binning 
+     *  information, one for each binner.
+     * @param binners the binners of the selected columns
      */
-    public NumericBinnerCellFactory(final DataColumnSpec newColSpec,
-            final List<Double>intervalUpperBounds, final int columnIndex,
-            final NumericBin[] bins) {
-        super(newColSpec);
-        if (intervalUpperBounds == null) {
-            throw new NullPointerException("Interval bounds must not be null!");
+    public NumericBinnerCellFactory(final DataColumnSpec[] newColSpecs,
+            final NumericColumnBinner[] binners) {
+        super(newColSpecs);
+        if (newColSpecs.length != binners.length) {
+            throw new IllegalArgumentException(
+                    "One column spec per binner required");
         }
-        m_intervalUpperBounds = intervalUpperBounds;
-        m_colIndex = columnIndex;
-        m_bins = bins;
-        
+        m_binners = binners;
     }
     
     /** {@inheritDoc} */
     @Override
-    public DataCell getCell(final DataRow row) {
-        DataCell currCell = row.getCell(m_colIndex);
-        // check the cell for missing value
-        if (currCell.isMissing()) {
-            return DataType.getMissingCell();
-        }
-        double currValue = ((DoubleValue)currCell).getDoubleValue();
-        int binNr = 0;
-        for (Double intervalBound : m_intervalUpperBounds) {
-            if (currValue <= intervalBound) {
-                m_bins[binNr].addRowToBin(row.getKey());
-                return new IntCell(binNr);
-            }
-            binNr++;
+    public DataCell[] getCells(final DataRow row) {
+        int rowOrdinal = m_rowOrdinal++;
+        DataCell[] cells = new DataCell[m_binners.length];
+        for (int i = 0; i < m_binners.length; i++) {
+            cells[i] = m_binners[i].getCell(row, rowOrdinal);
         }
-        return DataType.getMissingCell();
+        return cells;
     }
     
     /**
-     * @return the filled bins.
+     * @return the binners of the selected columns
      */
-    public NumericBin[] getBins() {
-        return m_bins;
+    public NumericColumnBinner[] getBinners() {
+        return m_binners;
     }
 
 }
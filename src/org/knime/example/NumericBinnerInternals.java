@@ -0,0 +1,420 @@
+/*
+ * ------------------------------------------------------------------------
+  * This source code, its documentation and all appendant files
+ * are protected by copyright law. All rights reserved.
+ *
+ * Copyright, 2008 - 2012
+ * KNIME.com, Zurich, Switzerland
+ *
+ * You may not modify, publish, transmit, transfer or sell, reproduce,
+ * create derivative works from, distribute, perform, display, or in
+ * any way exploit any of the content, in whole or in part, except as
+ * otherwise expressly permitted in writing by the copyright owner or
+ * as specified in the license file distributed with this product.
+ *
+ * If you have any questions please contact the copyright holder:
+ * website: www.knime.com
+ * email: contact@knime.com
+ * ---------------------------------------------------------------------
+ */
+package org.knime.example;
+
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.EOFException;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+
+import org.knime.core.data.RowKey;
+import org.knime.core.node.CanceledExecutionException;
+import org.knime.core.node.ExecutionMonitor;
+import org.knime.core.node.NodeLogger;
+
+/**
+ * The binary internals of the numeric binner: for each binned column its 
+ * name, the breakpoints, the size of each bin and the ordinals of the rows 
+ * in each bin. 
+ * <p>
+ * The file starts with a magic number and the format version, followed by 
+ * streams of deflated, checksummed blocks (see 
+ * {@link CompressedBlockOutputStream}): the summary with the columns, 
+ * breakpoints and bin sizes, optionally the row keys by ordinal, and the 
+ * memberships with the row ordinals of all bins which know their rows. The
+ * keys are only stored if they are not kept in an internal table, i.e. for
+ * internals migrated from the XML format, which contains the keys.
+ * <p>
+ * Loading copies the file to a private temporary file and reads only the 
+ * summary. The memberships are streamed from the copy on first demand (see
+ * {@link NumericBin#getRowOrdinals()}), the node directory may have been 
+ * cleared meanwhile. The copy is deleted by {@link #delete()}.
+ * 
+ * @author KNIME.com AG, Zurich, Switzerland
+ */
+public final class NumericBinnerInternals {
+    
+    /** The name of the internals file. */
+    public static final String FILE_NAME = "numericBinnerInternals.bin";
+    
+    // "NBIN"
+    private static final int MAGIC = 0x4E42494E;
+    
+    private static final int VERSION = 1;
+    
+    private static final NodeLogger LOGGER = 
+        NodeLogger.getLogger(NumericBinnerInternals.class);
+    
+    private final String[] m_columns;
+    
+    private final NumericBinModel[] m_models;
+    
+    private final NumericBin[][] m_bins;
+    
+    // the keys by ordinal if they were stored, null otherwise
+    private RowKey[] m_keys;
+    
+    private final File m_file;
+    
+    // position of the memberships in the file
+    private long m_membershipOffset;
+    
+    private boolean m_membershipsLoaded;
+    
+    private NumericBinnerInternals(final int nrColumns, final File file) {
+        m_columns = new String[nrColumns];
+        m_models = new NumericBinModel[nrColumns];
+        m_bins = new NumericBin[nrColumns][];
+        m_file = file;
+    }
+    
+    /**
+     * @return the names of the binned columns
+     */
+    public String[] getColumnNames() {
+        return m_columns;
+    }
+    
+    /**
+     * @return the bin model of each column, <code>null</code> if none was 
+     *  saved
+     */
+    public NumericBinModel[] getModels() {
+        return m_models;
+    }
+    
+    /**
+     * @return the loaded bins of each column
+     */
+    public NumericBin[][] getBins() {
+        return m_bins;
+    }
+    
+    /**
+     * @return the row keys by ordinal, <code>null</code> if they were not 
+     *  stored, i.e. they are kept in an internal table
+     */
+    public RowKey[] getKeys() {
+        return m_keys;
+    }
+    
+    /**
+     * @return the private copy the rows of the bins are read from
+     */
+    public File getFile() {
+        return m_file;
+    }
+    
+    /**
+     * Reads the row ordinals of all bins which know their rows, unless
+     * that has already been done. The memberships are streamed from the 
+     * file block by block.
+     * 
+     * @throws IllegalStateException if the file cannot be read anymore
+     */
+    synchronized void loadMemberships() {
+        if (m_membershipsLoaded) {
+            return;
+        }
+        try {
+            RandomAccessFile raf = new RandomAccessFile(m_file, "r");
+            try {
+                FileChannel channel = raf.getChannel();
+                channel.position(m_membershipOffset);
+                DataInputStream memberships = new DataInputStream(
+                        new CompressedBlockInputStream(channel));
+                // all or nothing, the bins stay consistent if reading fails
+                RowOrdinalSet[][] rows = new RowOrdinalSet[m_bins.length][];
+                for (int c = 0; c < m_bins.length; c++) {
+                    rows[c] = new RowOrdinalSet[m_bins[c].length];
+                    for (int i = 0; i < m_bins[c].length; i++) {
+                        NumericBin bin = m_bins[c][i];
+                        if (bin.isDeferredBy(this)) {
+                            rows[c][i] = RowOrdinalSet.readFrom(memberships);
+                            if (rows[c][i].size() != bin.getSize()) {
+                                throw new IOException("Size of bin " + i 
+                                        + " does not match its rows");
+                            }
+                        }
+                    }
+                }
+                memberships.close();
+                for (int c = 0; c < m_bins.length; c++) {
+                    for (int i = 0; i < m_bins[c].length; i++) {
+                        if (rows[c][i] != null) {
+                            m_bins[c][i].setRowOrdinals(rows[c][i]);
+                        }
+                    }
+                }
+                m_membershipsLoaded = true;
+            } finally {
+                raf.close();
+            }
+        } catch (IOException e) {
+            throw new IllegalStateException("Could not read the rows of the "
+                    + "bins from " + m_file + ": " + e.getMessage(), e);
+        }
+    }
+    
+    /**
+     * Deletes the private copy of the internals file. Bins whose rows were
+     * not read yet cannot read them afterwards.
+     */
+    public void delete() {
+        if (!m_file.delete() && m_file.exists()) {
+            LOGGER.warn("Could not delete " + m_file);
+        }
+    }
+    
+    /**
+     * Writes the internals.
+     * 
+     * @param file the file to write to
+     * @param columns the names of the binned columns
+     * @param models the bin model of each column, entries may be 
+     *  <code>null</code>
+     * @param bins the bins of each column, deferred rows are read before 
+     *  the file is opened
+     * @param keys the row keys by ordinal if they are not kept in an 
+     *  internal table, <code>null</code> otherwise
+     * @param exec to report progress and check for cancelation
+     * @throws IOException if the file cannot be written or the deferred 
+     *  rows cannot be read
+     * @throws CanceledExecutionException if the user canceled
+     */
+    public static void save(final File file, final String[] columns, 
+            final NumericBinModel[] models, final NumericBin[][] bins, 
+            final RowKey[] keys, final ExecutionMonitor exec) 
+        throws IOException, CanceledExecutionException {
+        int nrBins = 0;
+        try {
+            for (NumericBin[] columnBins : bins) {
+                for (NumericBin bin : columnBins) {
+                    bin.hasRowOrdinals();
+                }
+                nrBins += columnBins.length;
+            }
+        } catch (IllegalStateException e) {
+            // writing the sizes only would lose the rows silently
+            throw new IOException(e.getMessage(), e);
+        }
+        FileOutputStream fos = new FileOutputStream(file);
+        try {
+            FileChannel channel = fos.getChannel();
+            ByteBuffer header = ByteBuffer.allocate(8);
+            header.putInt(MAGIC).putInt(VERSION);
+            header.flip();
+            while (header.hasRemaining()) {
+                channel.write(header);
+            }
+            DataOutputStream summary = new DataOutputStream(
+                    new CompressedBlockOutputStream(channel));
+            summary.writeInt(columns.length);
+            for (int c = 0; c < columns.length; c++) {
+                summary.writeUTF(columns[c]);
+                double[] breakpoints = models[c] == null 
+                    ? new double[0] : models[c].getBreakpoints();
+                summary.writeInt(breakpoints.length);
+                for (double breakpoint : breakpoints) {
+                    summary.writeDouble(breakpoint);
+                }
+                summary.writeInt(bins[c].length);
+                for (NumericBin bin : bins[c]) {
+                    summary.writeBoolean(bin.hasRowOrdinals());
+                    summary.writeLong(bin.getSize());
+                }
+            }
+            summary.writeBoolean(keys != null);
+            summary.close();
+            if (keys != null) {
+                DataOutputStream keyStream = new DataOutputStream(
+                        new CompressedBlockOutputStream(channel));
+                keyStream.writeInt(keys.length);
+                for (RowKey key : keys) {
+                    // not writeUTF, which is limited to 64 KB
+                    byte[] bytes = key.getString().getBytes("UTF-8");
+                    keyStream.writeInt(bytes.length);
+                    keyStream.write(bytes);
+                }
+                keyStream.close();
+            }
+            DataOutputStream memberships = new DataOutputStream(
+                    new CompressedBlockOutputStream(channel));
+            int done = 0;
+            for (NumericBin[] columnBins : bins) {
+                for (NumericBin bin : columnBins) {
+                    exec.checkCanceled();
+                    exec.setProgress(done++ / (double)nrBins);
+                    if (bin.hasRowOrdinals()) {
+                        bin.writeRowOrdinals(memberships);
+                    }
+                }
+            }
+            memberships.close();
+        } finally {
+            fos.close();
+        }
+    }
+    
+    /**
+     * Copies the file and reads the columns, breakpoints and bin sizes. The
+     * rows of the bins are read from the copy when they are first 
+     * requested.
+     * 
+     * @param file the file written by {@link #save(File, String[], 
+     *  NumericBinModel[], NumericBin[][], ExecutionMonitor)}
+     * @param keyResolver translates the row ordinals of the loaded bins into
+     *  row keys
+     * @return the loaded internals
+     * @throws IOException if the file cannot be read or is corrupt
+     */
+    public static NumericBinnerInternals load(final File file, 
+            final RowKeyResolver keyResolver) throws IOException {
+        File copy = File.createTempFile("numericBinnerInternals", ".bin");
+        copy.deleteOnExit();
+        boolean loaded = false;
+        try {
+            copy(file, copy);
+            NumericBinnerInternals internals = load(copy, file, keyResolver);
+            loaded = true;
+            return internals;
+        } finally {
+            if (!loaded) {
+                copy.delete();
+            }
+        }
+    }
+    
+    private static void copy(final File from, final File to) 
+        throws IOException {
+        FileInputStream in = new FileInputStream(from);
+        try {
+            FileOutputStream out = new FileOutputStream(to);
+            try {
+                FileChannel source = in.getChannel();
+                FileChannel target = out.getChannel();
+                long size = source.size();
+                long position = 0;
+                while (position < size) {
+                    position += source.transferTo(
+                            position, size - position, target);
+                }
+            } finally {
+                out.close();
+            }
+        } finally {
+            in.close();
+        }
+    }
+    
+    // reads the summary from the copy, the original only names the file
+    private static NumericBinnerInternals load(final File copy, 
+            final File file, final RowKeyResolver keyResolver) 
+        throws IOException {
+        FileInputStream fis = new FileInputStream(copy);
+        try {
+            FileChannel channel = fis.getChannel();
+            ByteBuffer header = ByteBuffer.allocate(8);
+            while (header.hasRemaining()) {
+                if (channel.read(header) < 0) {
+                    throw new EOFException("Internals file is truncated");
+                }
+            }
+            header.flip();
+            if (header.getInt() != MAGIC) {
+                throw new IOException("Not a numeric binner internals file: " 
+                        + file);
+            }
+            int version = header.getInt();
+            if (version != VERSION) {
+                throw new IOException(
+                        "Unsupported numeric binner internals version: " 
+                        + version);
+            }
+            DataInputStream summary = new DataInputStream(
+                    new CompressedBlockInputStream(channel));
+            int nrColumns = readLength(summary);
+            NumericBinnerInternals internals = 
+                new NumericBinnerInternals(nrColumns, copy);
+            for (int c = 0; c < nrColumns; c++) {
+                internals.m_columns[c] = summary.readUTF();
+                double[] breakpoints = new double[readLength(summary)];
+                for (int i = 0; i < breakpoints.length; i++) {
+                    breakpoints[i] = summary.readDouble();
+                }
+                if (breakpoints.length > 0) {
+                    try {
+                        internals.m_models[c] = 
+                            new NumericBinModel(breakpoints);
+                    } catch (IllegalArgumentException e) {
+                        throw new IOException("Invalid breakpoints: " 
+                                + e.getMessage());
+                    }
+                }
+                NumericBin[] bins = new NumericBin[readLength(summary)];
+                for (int i = 0; i < bins.length; i++) {
+                    boolean hasRows = summary.readBoolean();
+                    long size = summary.readLong();
+                    if (hasRows) {
+                        bins[i] = new NumericBin(keyResolver, size, 
+                                internals);
+                    } else {
+                        bins[i] = new NumericBin(size);
+                    }
+                }
+                internals.m_bins[c] = bins;
+            }
+            boolean hasKeys = summary.readBoolean();
+            summary.close();
+            if (hasKeys) {
+                DataInputStream keyStream = new DataInputStream(
+                        new CompressedBlockInputStream(channel));
+                RowKey[] keys = new RowKey[readLength(keyStream)];
+                for (int i = 0; i < keys.length; i++) {
+                    byte[] bytes = new byte[readLength(keyStream)];
+                    keyStream.readFully(bytes);
+                    keys[i] = new RowKey(new String(bytes, "UTF-8"));
+                }
+                keyStream.close();
+                internals.m_keys = keys;
+            }
+            internals.m_membershipOffset = channel.position();
+            return internals;
+        } finally {
+            fis.close();
+        }
+    }
+    
+    private static int readLength(final DataInputStream in) 
+        throws IOException {
+        int length = in.readInt();
+        if (length < 0) {
+            throw new IOException("Invalid length in internals: " + length);
+        }
+        return length;
+    }
+
+}
@@ -0,0 +1,229 @@
+/*
+ * ------------------------------------------------------------------------
+  * This source code, its documentation and all appendant files
+ * are protected by copyright law. All rights reserved.
+ *
+ * Copyright, 2008 - 2012
+ * KNIME.com, Zurich, Switzerland
+ *
+ * You may not modify, publish, transmit, transfer or sell, reproduce,
+ * create derivative works from, distribute, perform, display, or in
+ * any way exploit any of the content, in whole or in part, except as
+ * otherwise expressly permitted in writing by the copyright owner or
+ * as specified in the license file distributed with this product.
+ *
+ * If you have any questions please contact the copyright holder:
+ * website: www.knime.com
+ * email: contact@knime.com
+ * ---------------------------------------------------------------------
+ */
+package org.knime.example;
+
+import java.lang.management.ManagementFactory;
+
+import javax.management.JMException;
+import javax.management.MBeanServer;
+import javax.management.ObjectName;
+
+import org.knime.core.node.NodeLogger;
+
+/**
+ * Records where the time of a NumericBinner execution goes: the time per 
+ * phase, the binning throughput, the memory of the bin memberships and 
+ * how unevenly the rows are spread over the bins. The node pushes them as
+ * flow variables; registered at the platform MBean server they can also 
+ * be monitored by JMX clients.
+ * 
+ * @author KNIME.com AG, Zurich, Switzerland
+ */
+public class NumericBinnerMetrics implements NumericBinnerMetricsMBean {
+    
+    private static final NodeLogger LOGGER = 
+        NodeLogger.getLogger(NumericBinnerMetrics.class);
+    
+    /** The domain of the registered MBeans. */
+    public static final String JMX_DOMAIN = "org.knime.example";
+    
+    /** The timed phases of an execution. */
+    public enum Phase {
+        /** Determining the domains of columns without bounds. */
+        DOMAIN_SCAN,
+        /** Binning the rows. */
+        BINNING,
+        /** Collecting the row keys and finishing the bins. */
+        KEY_COLLECTION,
+        /** Writing the internals. */
+        SAVE_INTERNALS
+    }
+    
+    private static final double NANOS_PER_MILLI = 1000000;
+    
+    private final long[] m_phaseNanos = new long[Phase.values().length];
+    
+    private long m_rowCount;
+    
+    private long m_peakMembershipMemory;
+    
+    private double m_binSkew;
+    
+    // the name this is registered under, null if not registered
+    private ObjectName m_objectName;
+    
+    /**
+     * Forgets the metrics of the previous execution.
+     */
+    public synchronized void reset() {
+        for (int i = 0; i < m_phaseNanos.length; i++) {
+            m_phaseNanos[i] = 0;
+        }
+        m_rowCount = 0;
+        m_peakMembershipMemory = 0;
+        m_binSkew = 0;
+    }
+    
+    /**
+     * @param phase the finished phase
+     * @param startNanos the {@link System#nanoTime()} when the phase 
+     *  started, the time since then is added to the phase
+     */
+    public synchronized void addPhaseTime(final Phase phase, 
+            final long startNanos) {
+        m_phaseNanos[phase.ordinal()] += System.nanoTime() - startNanos;
+    }
+    
+    /**
+     * @param phase a phase
+     * @return the milliseconds spent in the phase
+     */
+    public synchronized long getPhaseMillis(final Phase phase) {
+        return Math.round(m_phaseNanos[phase.ordinal()] / NANOS_PER_MILLI);
+    }
+    
+    /**
+     * @param rowCount the number of binned rows
+     */
+    public synchronized void setRowCount(final long rowCount) {
+        m_rowCount = rowCount;
+    }
+    
+    /**
+     * Records the memory of the bin memberships, the largest value is kept.
+     * 
+     * @param bytes the approximate number of bytes used by the rows of all 
+     *  bins
+     */
+    public synchronized void updateMembershipMemory(final long bytes) {
+        m_peakMembershipMemory = Math.max(m_peakMembershipMemory, bytes);
+    }
+    
+    /**
+     * Records the skew of the bins of a column, the largest value is kept.
+     * 
+     * @param counts the number of rows per bin of a column
+     */
+    public synchronized void updateBinSkew(final long[] counts) {
+        long total = 0;
+        long max = 0;
+        for (long count : counts) {
+            total += count;
+            max = Math.max(max, count);
+        }
+        if (total > 0) {
+            m_binSkew = Math.max(m_binSkew, 
+                    max / (total / (double)counts.length));
+        }
+    }
+    
+    /** {@inheritDoc} */
+    @Override
+    public long getDomainScanMillis() {
+        return getPhaseMillis(Phase.DOMAIN_SCAN);
+    }
+    
+    /** {@inheritDoc} */
+    @Override
+    public long getBinningMillis() {
+        return getPhaseMillis(Phase.BINNING);
+    }
+    
+    /** {@inheritDoc} */
+    @Override
+    public long getKeyCollectionMillis() {
+        return getPhaseMillis(Phase.KEY_COLLECTION);
+    }
+    
+    /** {@inheritDoc} */
+    @Override
+    public long getSaveInternalsMillis() {
+        return getPhaseMillis(Phase.SAVE_INTERNALS);
+    }
+    
+    /** {@inheritDoc} */
+    @Override
+    public synchronized long getRowCount() {
+        return m_rowCount;
+    }
+    
+    /** {@inheritDoc} */
+    @Override
+    public synchronized double getRowsPerSecond() {
+        long nanos = m_phaseNanos[Phase.BINNING.ordinal()];
+        if (nanos == 0) {
+            return 0;
+        }
+        return m_rowCount / (nanos / (NANOS_PER_MILLI * 1000));
+    }
+    
+    /** {@inheritDoc} */
+    @Override
+    public synchronized long getPeakMembershipMemory() {
+        return m_peakMembershipMemory;
+    }
+    
+    /** {@inheritDoc} */
+    @Override
+    public synchronized double getBinSkew() {
+        return m_binSkew;
+    }
+    
+    /**
+     * Registers these metrics at the platform MBean server unless they are
+     * registered already. Failures are only logged, the metrics are not 
+     * essential.
+     * 
+     * @param name distinguishes the metrics of different nodes
+     */
+    public synchronized void register(final String name) {
+        if (m_objectName != null) {
+            return;
+        }
+        try {
+            ObjectName objectName = new ObjectName(JMX_DOMAIN 
+                    + ":type=NumericBinner,name=" + ObjectName.quote(name));
+            MBeanServer server = ManagementFactory.getPlatformMBeanServer();
+            server.registerMBean(this, objectName);
+            m_objectName = objectName;
+        } catch (JMException e) {
+            LOGGER.debug("Could not register the metrics: " 
+                    + e.getMessage(), e);
+        }
+    }
+    
+    /**
+     * Removes these metrics from the platform MBean server if they are 
+     * registered.
+     */
+    public synchronized void unregister() {
+        if (m_objectName == null) {
+            return;
+        }
+        try {
+            ManagementFactory.getPlatformMBeanServer().unregisterMBean(
+                    m_objectName);
+        } catch (JMException e) {
+            LOGGER.debug("Could not unregister the metrics: " 
+                    + e.getMessage(), e);
+        }
+        m_objectName = null;
+    }
+}
@@ -0,0 +1,75 @@
+/*
+ * ------------------------------------------------------------------------
+  * This source code, its documentation and all appendant files
+ * are protected by copyright law. All rights reserved.
+ *
+ * Copyright, 2008 - 2012
+ * KNIME.com, Zurich, Switzerland
+ *
+ * You may not modify, publish, transmit, transfer or sell, reproduce,
+ * create derivative works from, distribute, perform, display, or in
+ * any way exploit any of the content, in whole or in part, except as
+ * otherwise expressly permitted in writing by the copyright owner or
+ * as specified in the license file distributed with this product.
+ *
+ * If you have any questions please contact the copyright holder:
+ * website: www.knime.com
+ * email: contact@knime.com
+ * ---------------------------------------------------------------------
+ */
+package org.knime.example;
+
+/**
+ * The management interface of {@link NumericBinnerMetrics}, the metrics of 
+ * the last execution of a NumericBinner node as seen by JMX clients.
+ * 
+ * @author KNIME.com AG, Zurich, Switzerland
+ */
+public interface NumericBinnerMetricsMBean {
+    
+    /**
+     * @return the milliseconds spent determining the domains of columns 
+     *  without bounds, 0 if no scan was needed
+     */
+    long getDomainScanMillis();
+    
+    /**
+     * @return the milliseconds spent binning the rows
+     */
+    long getBinningMillis();
+    
+    /**
+     * @return the milliseconds spent collecting the row keys and finishing 
+     *  the bins
+     */
+    long getKeyCollectionMillis();
+    
+    /**
+     * @return the milliseconds spent writing the internals, which happens 
+     *  after the execution
+     */
+    long getSaveInternalsMillis();
+    
+    /**
+     * @return the number of binned rows
+     */
+    long getRowCount();
+    
+    /**
+     * @return the number of rows binned per second
+     */
+    double getRowsPerSecond();
+    
+    /**
+     * @return the approximate number of bytes used by the rows of all bins
+     *  when they were largest
+     */
+    long getPeakMembershipMemory();
+    
+    /**
+     * @return the size of the largest bin divided by the average size of 
+     *  the bins, the maximum over all binned columns; 1 if all bins are 
+     *  equally large
+     */
+    double getBinSkew();
+}
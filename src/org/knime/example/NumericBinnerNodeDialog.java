@@ -19,16 +19,27 @@
  */
 package org.knime.example;
 
+import javax.swing.event.ChangeEvent;
+import javax.swing.event.ChangeListener;
+
+import org.knime.core.data.DataTableSpec;
 import org.knime.core.data.DoubleValue;
+import org.knime.core.node.NodeSettingsRO;
+import org.knime.core.node.NotConfigurableException;
 import org.knime.core.node.defaultnodesettings.DefaultNodeSettingsPane;
-import org.knime.core.node.defaultnodesettings.DialogComponentColumnNameSelection;
+import org.knime.core.node.defaultnodesettings.DialogComponentBoolean;
+import org.knime.core.node.defaultnodesettings.DialogComponentColumnFilter;
 import org.knime.core.node.defaultnodesettings.DialogComponentNumber;
+import org.knime.core.node.defaultnodesettings.DialogComponentStringSelection;
+import org.knime.core.node.defaultnodesettings.SettingsModelBoolean;
+import org.knime.core.node.defaultnodesettings.SettingsModelDouble;
+import org.knime.core.node.defaultnodesettings.SettingsModelFilterString;
 import org.knime.core.node.defaultnodesettings.SettingsModelIntegerBounded;
 import org.knime.core.node.defaultnodesettings.SettingsModelString;
 
 /**
  * <code>NodeDialog</code> for the "NumericBinner" Node.
- * Simple numeric binner with equidistant bins
+ * Simple numeric binner with equidistant or equal frequency bins
  *
  * This node dialog derives from {@link DefaultNodeSettingsPane} which allows
  * creation of a simple dialog with standard components. If you need a more 
@@ -38,11 +49,17 @@ import org.knime.core.node.defaultnodesettings.SettingsModelString;
  * @author KNIME.com AG, Zurich, Switzerland
  */
 public class NumericBinnerNodeDialog extends DefaultNodeSettingsPane {
+    
+    private final SettingsModelFilterString m_columns = 
+        new SettingsModelFilterString(
+                NumericBinnerNodeModel.CFGKEY_COLUMN_NAMES);
 
     /**
      * New pane for configuring NumericBinner node dialog.
-     * Contains control elements to adjust the number of bins 
-     * and to select the column to bin.
+     * Contains control elements to adjust the number of bins, 
+     * to select the columns to bin, the binning method and its bounds, 
+     * the hilite support, the statistics of the bins and the memory for 
+     * their rows.
      * Suppress warnings here: it is unavoidable since the 
      * allowed types passed as an generic array. 
      */
@@ -54,15 +71,90 @@ public class NumericBinnerNodeDialog extends DefaultNodeSettingsPane {
                 new SettingsModelIntegerBounded(
                     NumericBinnerNodeModel.CFGKEY_NR_OF_BINS,
                     NumericBinnerNodeModel.DEFAULT_NR_OF_BINS,
-                    1, Integer.MAX_VALUE),
+                    1, NumericBinnerNodeModel.MAX_NR_OF_BINS),
                     "Number of bins:", /*step*/ 1));
-        // column to bin
-        addDialogComponent(new DialogComponentColumnNameSelection(
-                new SettingsModelString(
-                    NumericBinnerNodeModel.CFGKEY_COLUMN_NAME,
-                    "Select a column"),
-                    "Select the column to bin",
+        // columns to bin
+        addDialogComponent(new DialogComponentColumnFilter(m_columns,
                     NumericBinnerNodeModel.IN_PORT,
                     DoubleValue.class));                    
+        // binning method and the accuracy of the equal frequency bins
+        final SettingsModelString binningMethod = new SettingsModelString(
+                NumericBinnerNodeModel.CFGKEY_BINNING_METHOD,
+                NumericBinnerNodeModel.METHOD_EQUIDISTANT);
+        final SettingsModelIntegerBounded sketchSize = 
+            new SettingsModelIntegerBounded(
+                NumericBinnerNodeModel.CFGKEY_SKETCH_SIZE,
+                QuantileSketch.DEFAULT_K, QuantileSketch.MIN_K, 
+                Integer.MAX_VALUE);
+        final SettingsModelIntegerBounded sampleSize = 
+            new SettingsModelIntegerBounded(
+                NumericBinnerNodeModel.CFGKEY_SAMPLE_SIZE, 
+                0, 0, Integer.MAX_VALUE);
+        final SettingsModelDouble lowerBound = new SettingsModelDouble(
+                NumericBinnerNodeModel.CFGKEY_LOWER_BOUND, 0);
+        final SettingsModelDouble upperBound = new SettingsModelDouble(
+                NumericBinnerNodeModel.CFGKEY_UPPER_BOUND, 100);
+        binningMethod.addChangeListener(new ChangeListener() {
+            /** {@inheritDoc} */
+            @Override
+            public void stateChanged(final ChangeEvent e) {
+                String method = binningMethod.getStringValue();
+                sketchSize.setEnabled(
+                        NumericBinnerNodeModel.METHOD_EQUAL_FREQUENCY.equals(
+                                method));
+                boolean fixedBounds = 
+                    NumericBinnerNodeModel.METHOD_FIXED_BOUNDS.equals(method);
+                lowerBound.setEnabled(fixedBounds);
+                upperBound.setEnabled(fixedBounds);
+                sampleSize.setEnabled(!fixedBounds);
+            }
+        });
+        sketchSize.setEnabled(false);
+        lowerBound.setEnabled(false);
+        upperBound.setEnabled(false);
+        addDialogComponent(new DialogComponentStringSelection(
+                binningMethod, "Binning method:", 
+                NumericBinnerNodeModel.BINNING_METHODS));
+        addDialogComponent(new DialogComponentNumber(sketchSize,
+                "Sketch size (higher is more accurate):", /*step*/ 50));
+        addDialogComponent(new DialogComponentNumber(sampleSize,
+                "Rows sampled to estimate the bins (0 = all):", 
+                /*step*/ 1000));
+        addDialogComponent(new DialogComponentNumber(lowerBound,
+                "Lower bound:", /*step*/ 1));
+        addDialogComponent(new DialogComponentNumber(upperBound,
+                "Upper bound:", /*step*/ 1));
+        // keep the rows of the bins for hiliting or only count them
+        addDialogComponent(new DialogComponentStringSelection(
+                new SettingsModelString(
+                    NumericBinnerNodeModel.CFGKEY_HILITE_SUPPORT,
+                    NumericBinnerNodeModel.HILITE_AUTOMATIC),
+                    "Hilite support:",
+                    NumericBinnerNodeModel.HILITE_OPTIONS));
+        // the bin statistics can contain more than the counts
+        addDialogComponent(new DialogComponentBoolean(
+                new SettingsModelBoolean(
+                    NumericBinnerNodeModel.CFGKEY_VALUE_STATISTICS, false),
+                    "Sum, mean, minimum and maximum per bin"));
+        // the rows of the bins beyond this memory are written to disk
+        addDialogComponent(new DialogComponentNumber(
+                new SettingsModelIntegerBounded(
+                    NumericBinnerNodeModel.CFGKEY_MEMBERSHIP_BUDGET,
+                    0, 0, Integer.MAX_VALUE),
+                    "Memory for the rows of the bins (MB, 0 = automatic):", 
+                    /*step*/ 64));
+    }
+    
+    /** {@inheritDoc} */
+    @Override
+    public void loadAdditionalSettingsFrom(final NodeSettingsRO settings,
+            final DataTableSpec[] specs) throws NotConfigurableException {
+        // older versions bin a single column
+        if (!settings.containsKey(NumericBinnerNodeModel.CFGKEY_COLUMN_NAMES)
+                && settings.containsKey(
+                        NumericBinnerNodeModel.CFGKEY_COLUMN_NAME)) {
+            m_columns.setIncludeList(new String[]{settings.getString(
+                    NumericBinnerNodeModel.CFGKEY_COLUMN_NAME, "")});
+        }
     }
 }
@@ -25,7 +25,7 @@ import org.knime.core.node.NodeView;
 
 /**
  * <code>NodeFactory</code> for the "NumericBinner" Node.
- * Simple numeric binner with equidistant bins.
+ * Simple numeric binner with equidistant or equal frequency bins.
  *
  * @author KNIME.com AG, Zurich, Switzerland
  */
@@ -19,11 +19,12 @@
  */
 package org.knime.example;
 
+import java.awt.GraphicsEnvironment;
 import java.io.File;
 import java.io.FileInputStream;
-import java.io.FileOutputStream;
 import java.io.IOException;
 import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.List;
 
 import org.knime.core.data.DataCell;
@@ -33,45 +34,130 @@ import org.knime.core.data.DataColumnSpec;
 import org.knime.core.data.DataColumnSpecCreator;
 import org.knime.core.data.DataRow;
 import org.knime.core.data.DataTableSpec;
+import org.knime.core.data.DataType;
 import org.knime.core.data.DoubleValue;
-import org.knime.core.data.container.CellFactory;
+import org.knime.core.data.LongValue;
+import org.knime.core.data.RowKey;
+import org.knime.core.data.append.AppendedColumnRow;
 import org.knime.core.data.container.ColumnRearranger;
+import org.knime.core.data.def.DefaultRow;
 import org.knime.core.data.def.DoubleCell;
 import org.knime.core.data.def.IntCell;
+import org.knime.core.data.def.LongCell;
+import org.knime.core.data.def.StringCell;
+import org.knime.core.node.BufferedDataContainer;
 import org.knime.core.node.BufferedDataTable;
+import org.knime.core.node.BufferedDataTableHolder;
 import org.knime.core.node.CanceledExecutionException;
 import org.knime.core.node.ExecutionContext;
 import org.knime.core.node.ExecutionMonitor;
 import org.knime.core.node.InvalidSettingsException;
 import org.knime.core.node.ModelContent;
 import org.knime.core.node.ModelContentRO;
-import org.knime.core.node.ModelContentWO;
 import org.knime.core.node.NodeModel;
 import org.knime.core.node.NodeSettingsRO;
 import org.knime.core.node.NodeSettingsWO;
+import org.knime.core.node.defaultnodesettings.SettingsModelBoolean;
+import org.knime.core.node.defaultnodesettings.SettingsModelDouble;
+import org.knime.core.node.defaultnodesettings.SettingsModelFilterString;
 import org.knime.core.node.defaultnodesettings.SettingsModelIntegerBounded;
 import org.knime.core.node.defaultnodesettings.SettingsModelString;
+import org.knime.core.node.port.PortObject;
+import org.knime.core.node.port.PortObjectSpec;
+import org.knime.core.node.port.PortType;
+import org.knime.core.node.streamable.DataTableRowInput;
+import org.knime.core.node.streamable.InputPortRole;
+import org.knime.core.node.streamable.OutputPortRole;
+import org.knime.core.node.streamable.PartitionInfo;
+import org.knime.core.node.streamable.PortInput;
+import org.knime.core.node.streamable.PortObjectInput;
+import org.knime.core.node.streamable.PortObjectOutput;
+import org.knime.core.node.streamable.PortOutput;
+import org.knime.core.node.streamable.RowInput;
+import org.knime.core.node.streamable.RowOutput;
+import org.knime.core.node.streamable.StreamableOperator;
+import org.knime.example.NumericBinnerMetrics.Phase;
 
 /**
  * This is the model implementation of NumericBinner.
- * Simple numeric binner with equidistant bins
+ * Simple numeric binner with equidistant or equal frequency bins
  *
  * @author KNIME.com AG, Zurich, Switzerland
  */
-public class NumericBinnerNodeModel extends NodeModel {
+public class NumericBinnerNodeModel extends NodeModel 
+        implements BufferedDataTableHolder {
 
     /** Constant for the inport index. */
     public static final int IN_PORT = 0;
     
+    /** Constant for the index of the outport with the binned data. */
+    public static final int DATA_OUT_PORT = 0;
+    
+    /** Constant for the index of the outport with the bin model. */
+    public static final int MODEL_OUT_PORT = 1;
+    
+    /** Constant for the index of the outport with one row per bin. */
+    public static final int STATISTICS_OUT_PORT = 2;
+    
     // ************ fields for the settings ***************
     
     /** The config key for the number of bins. */ 
     public static final String CFGKEY_NR_OF_BINS = "numberOfbins"; 
-    /** The config key for the selected column. */
+    /** The config key for the selected columns. */
+    public static final String CFGKEY_COLUMN_NAMES = "columnNames";
+    /** The config key for the single selected column of older versions. */
     public static final String CFGKEY_COLUMN_NAME = "columnName";
 
+    /** The config key for the binning method. */
+    public static final String CFGKEY_BINNING_METHOD = "binningMethod";
+    /** The config key for the lower bound of the fixed bounds. */
+    public static final String CFGKEY_LOWER_BOUND = "lowerBound";
+    /** The config key for the upper bound of the fixed bounds. */
+    public static final String CFGKEY_UPPER_BOUND = "upperBound";
+    /** The config key for the number of rows sampled for the domain. */
+    public static final String CFGKEY_SAMPLE_SIZE = "domainSampleSize";
+    /** The config key for the size of the quantile sketch. */
+    public static final String CFGKEY_SKETCH_SIZE = "sketchSize";
+    /** The config key for the hilite support. */
+    public static final String CFGKEY_HILITE_SUPPORT = "hiliteSupport";
+    /** The config key for the value statistics per bin. */
+    public static final String CFGKEY_VALUE_STATISTICS = "valueStatistics";
+    /** The config key for the memory of the rows of the bins in MB. */
+    public static final String CFGKEY_MEMBERSHIP_BUDGET = "membershipBudget";
+
+    /** The prefix of the flow variables with the execution metrics. */
+    public static final String FLOW_VARIABLE_PREFIX = "numericBinner.";
+
     /** Default number of bins. */
     public static final int DEFAULT_NR_OF_BINS = 10;
+    
+    /** 
+     * Largest number of bins, the bins below and above fixed or sampled 
+     * bounds and their breakpoints must not overflow an int. 
+     */
+    public static final int MAX_NR_OF_BINS = Integer.MAX_VALUE - 3;
+    
+    /** Binning method: bins of equal width between minimum and maximum. */
+    public static final String METHOD_EQUIDISTANT = "Equidistant";
+    /** Binning method: bins with (approximately) equal number of rows. */
+    public static final String METHOD_EQUAL_FREQUENCY = "Equal frequency";
+    /** Binning method: bins of equal width between the given bounds and 
+     * two bins for the values outside of them. */
+    public static final String METHOD_FIXED_BOUNDS = 
+        "Equidistant between fixed bounds";
+    /** All binning methods. */
+    public static final String[] BINNING_METHODS = new String[]{
+        METHOD_EQUIDISTANT, METHOD_EQUAL_FREQUENCY, METHOD_FIXED_BOUNDS};
+    
+    /** Hilite support: keep the rows of the bins unless running headless. */
+    public static final String HILITE_AUTOMATIC = "Automatic";
+    /** Hilite support: always keep the rows of the bins. */
+    public static final String HILITE_ALWAYS = "Always";
+    /** Hilite support: only count the rows of the bins. */
+    public static final String HILITE_NEVER = "Never (counts only)";
+    /** All hilite support options. */
+    public static final String[] HILITE_OPTIONS = new String[]{
+        HILITE_AUTOMATIC, HILITE_ALWAYS, HILITE_NEVER};
 
 
     // the settings model for the number of bins 
@@ -79,188 +165,792 @@ public class NumericBinnerNodeModel extends NodeModel {
         new SettingsModelIntegerBounded(
                  NumericBinnerNodeModel.CFGKEY_NR_OF_BINS,
                  NumericBinnerNodeModel.DEFAULT_NR_OF_BINS,
-                 1, Integer.MAX_VALUE);
+                 1, NumericBinnerNodeModel.MAX_NR_OF_BINS);
+    
+    // the settings model storing the columns to bin
+    private final SettingsModelFilterString m_columns = 
+        new SettingsModelFilterString(
+                NumericBinnerNodeModel.CFGKEY_COLUMN_NAMES);
+    
+    // the settings model storing the binning method
+    private final SettingsModelString m_binningMethod = 
+        new SettingsModelString(NumericBinnerNodeModel.CFGKEY_BINNING_METHOD,
+                METHOD_EQUIDISTANT);
+    
+    // the bounds of the regular bins if they are fixed
+    private final SettingsModelDouble m_lowerBound = new SettingsModelDouble(
+            NumericBinnerNodeModel.CFGKEY_LOWER_BOUND, 0);
+    
+    private final SettingsModelDouble m_upperBound = new SettingsModelDouble(
+            NumericBinnerNodeModel.CFGKEY_UPPER_BOUND, 100);
     
-    // the settings model storing the column to bin
-    private final SettingsModelString m_column = new SettingsModelString(
-            NumericBinnerNodeModel.CFGKEY_COLUMN_NAME, "");
+    // the number of rows sampled to estimate the bins, 0 to read all rows
+    private final SettingsModelIntegerBounded m_sampleSize =
+        new SettingsModelIntegerBounded(
+                NumericBinnerNodeModel.CFGKEY_SAMPLE_SIZE,
+                0, 0, Integer.MAX_VALUE);
+    
+    // the size of the quantile sketch for equal frequency binning
+    private final SettingsModelIntegerBounded m_sketchSize =
+        new SettingsModelIntegerBounded(
+                NumericBinnerNodeModel.CFGKEY_SKETCH_SIZE,
+                QuantileSketch.DEFAULT_K, QuantileSketch.MIN_K, 
+                Integer.MAX_VALUE);
+    
+    // whether the bins keep their rows for hiliting
+    private final SettingsModelString m_hiliteSupport = 
+        new SettingsModelString(NumericBinnerNodeModel.CFGKEY_HILITE_SUPPORT,
+                HILITE_AUTOMATIC);
+
+
+    // whether the bin statistics contain sum, mean, minimum and maximum
+    private final SettingsModelBoolean m_valueStatistics = 
+        new SettingsModelBoolean(
+                NumericBinnerNodeModel.CFGKEY_VALUE_STATISTICS, false);
+    
+    // the memory for the rows of the bins in MB, 0 for a quarter of the heap
+    private final SettingsModelIntegerBounded m_membershipBudget =
+        new SettingsModelIntegerBounded(
+                NumericBinnerNodeModel.CFGKEY_MEMBERSHIP_BUDGET,
+                0, 0, Integer.MAX_VALUE);
 
 
     // ************* fields needed for execution **************
     
-    private NumericBin[] m_bins;
+    // the names of the binned columns
+    private String[] m_binnedColumns;
     
-    // *********** Internal Model Keys:*************
+    // the bins of each binned column
+    private NumericBin[][] m_bins;
+    
+    // the loaded internals, they read the rows of the bins from a private
+    // copy of the file; null if the bins were not loaded
+    private NumericBinnerInternals m_internals;
     
-    private static final String FILE_NAME = "numericBinnerInternals.xml";
+    // translates the row ordinals of the bins into keys, its table is 
+    // persisted as internal table
+    private final RowKeyResolver m_keyResolver = new RowKeyResolver();
+    
+    // holds the rows of the bins which exceeded the memory budget, null if
+    // the bins only count their rows
+    private BinMembershipSpill m_spill;
+    
+    // *********** Internal Model Keys:*************
     
-    private static final String INTERNAL_MODEL = "internalModel";
+    // the XML internals written by older versions
+    private static final String LEGACY_FILE_NAME = 
+        "numericBinnerInternals.xml";
     
     private static final String NUMERIC_BIN = "numericBin";
     
-    // the external model
-    private NumericBinModel m_model;    
+    // the external model of each binned column
+    private NumericBinModel[] m_models;
+    
+    // true if the bins of all columns can be derived from the spec, i.e. 
+    // the node can bin in a single pass over the input
+    private boolean m_singlePass;
+    
+    // the time per phase and statistics of the last execution
+    private final NumericBinnerMetrics m_metrics = new NumericBinnerMetrics();
     
     /**
-     * Constructor for the node model with one in-port for the data to bin
-     * and one out-port for the input data with an additional column with 
-     * the binning information.
+     * Constructor for the node model with one in-port for the data to bin,
+     * one out-port for the input data with an additional column with 
+     * the binning information, one out-port for the bins, which can be
+     * applied to other data, and one out-port with the statistics of the 
+     * bins.
      */
     protected NumericBinnerNodeModel() {
-        super(1, 1);
+        super(new PortType[]{BufferedDataTable.TYPE}, new PortType[]{
+                BufferedDataTable.TYPE, NumericBinModelPortObject.TYPE,
+                BufferedDataTable.TYPE});
     }
 
     /** {@inheritDoc} */
     @Override
-    protected BufferedDataTable[] execute(final BufferedDataTable[] inData,
+    protected PortObject[] execute(final PortObject[] inObjects,
             final ExecutionContext exec) throws Exception {
-        // first we get the column spec of the selected column
-        DataColumnSpec colSpec = inData[IN_PORT].getDataTableSpec()
-            .getColumnSpec(m_column.getStringValue());
-        double lowerBound = 0;
-        double upperBound = 0;
+        BufferedDataTable inData = (BufferedDataTable)inObjects[IN_PORT];
+        DataTableSpec inSpec = inData.getDataTableSpec();
+        startMetrics();
+        // the progress of the binning, half of it if a domain scan is needed
+        ExecutionMonitor binningExec = exec;
+        // check if we have to scan the data to determine the bins
+        NumericBinModel[] models = createBinModels(inSpec);
+        if (!isComplete(models)) {
+            // one pass determines the domains of all remaining columns
+            scanBinModels(models, inData, 
+                    exec.createSubProgress(0.5));
+            binningExec = exec.createSubProgress(0.5);
+        }
+        // instantiate the cell factory
+        NumericBinnerCellFactory cellFactory = 
+            createCellFactory(inSpec, models);
+        long start = System.nanoTime();
+        BufferedDataTable bufferedOutput;
+        if (Runtime.getRuntime().availableProcessors() > 1 
+                && inData.getRowCount() > NumericDomainCalculator.CHUNK_SIZE) {
+            // chunks of rows are binned in parallel, all columns at once
+            bufferedOutput = new NumericParallelBinner(cellFactory).execute(
+                    inData, exec, binningExec);
+        } else {
+            // create the column rearranger
+            ColumnRearranger outputTable = new ColumnRearranger(inSpec);
+            // append the new columns, all are binned in the same pass
+            outputTable.append(cellFactory);
+            // and create the actual output table
+            bufferedOutput = exec.createColumnRearrangeTable(
+                    inData, outputTable, binningExec);
+        }
+        m_metrics.addPhaseTime(Phase.BINNING, start);
+        m_metrics.setRowCount(inData.getRowCount());
+        // the input provides the keys in the order of the row ordinals
+        start = System.nanoTime();
+        m_keyResolver.setTable(
+                isCollectingRows() ? createKeyTable(inData, exec) : null);
+        finishBins(cellFactory);
+        m_metrics.addPhaseTime(Phase.KEY_COLLECTION, start);
+        pushMetrics();
+        // the statistics were accumulated while binning
+        BufferedDataContainer statistics = exec.createDataContainer(
+                createStatisticsSpec(m_valueStatistics.getBooleanValue()));
+        for (DataRow row : createStatisticsRows(cellFactory)) {
+            statistics.addRowToTable(row);
+        }
+        statistics.close();
+        // return it together with the bins and their statistics
+        return new PortObject[]{bufferedOutput, 
+                new NumericBinModelPortObject(m_binnedColumns, m_models),
+                statistics.getTable()};
+    }
+    
+    /**
+     * Sets the bin models and creates the empty bins.
+     * 
+     * @param inSpec the spec of the input table
+     * @param models the intervals of the bins of each selected column
+     * @return the cell factory filling the bins
+     */
+    private NumericBinnerCellFactory createCellFactory(
+            final DataTableSpec inSpec, final NumericBinModel[] models) {
+        m_binnedColumns = getSelectedColumns();
+        m_models = models;
+        closeSpill();
+        if (isCollectingRows()) {
+            m_spill = new BinMembershipSpill(getMembershipBudget());
+        }
+        NumericColumnBinner[] binners = 
+            new NumericColumnBinner[m_binnedColumns.length];
+        for (int c = 0; c < binners.length; c++) {
+            // we also need the data structure for the bins, unless only
+            // the number of rows per bin is of interest
+            NumericBin[] bins = null;
+            if (isCollectingRows()) {
+                bins = new NumericBin[models[c].getNumberOfBins()];
+                for (int i = 0; i < bins.length; i++) {
+                    // fill the bins with empty representations, all 
+                    // columns share the row ordinals
+                    bins[i] = new NumericBin(m_keyResolver, m_spill);
+                }
+            }
+            int colIndex = inSpec.findColumnIndex(m_binnedColumns[c]);
+            binners[c] = new NumericColumnBinner(models[c], colIndex, bins,
+                    m_valueStatistics.getBooleanValue());
+        }
+        int[] numbersOfBins = new int[models.length];
+        for (int c = 0; c < models.length; c++) {
+            numbersOfBins[c] = models[c].getNumberOfBins();
+        }
+        return new NumericBinnerCellFactory(createOutputColumnSpecs(
+                m_binnedColumns, numbersOfBins), binners);
+    }
+    
+    /**
+     * @return the columns to bin in the order of the input table
+     */
+    private String[] getSelectedColumns() {
+        List<String> columns = m_columns.getIncludeList();
+        return columns.toArray(new String[columns.size()]);
+    }
+    
+    /**
+     * @return the number of bytes the rows of all bins may use before they 
+     *  are written to disk
+     */
+    private long getMembershipBudget() {
+        int budget = m_membershipBudget.getIntValue();
+        if (budget == 0) {
+            return Runtime.getRuntime().maxMemory() / 4;
+        }
+        return budget * (1L << 20);
+    }
+    
+    private void closeSpill() {
+        if (m_spill != null) {
+            m_spill.close();
+            m_spill = null;
+        }
+    }
+    
+    /**
+     * @return true if the bins keep their rows to support hiliting, 
+     *  false if they only count them
+     */
+    private boolean isCollectingRows() {
+        String hiliteSupport = m_hiliteSupport.getStringValue();
+        if (HILITE_AUTOMATIC.equals(hiliteSupport)) {
+            // nobody will look at the view
+            return !GraphicsEnvironment.isHeadless();
+        }
+        return HILITE_ALWAYS.equals(hiliteSupport);
+    }
+    
+    /**
+     * The row keys of a table in the order of the row ordinals. Only the 
+     * keys are kept as internal table, not the binned columns and all
+     * other columns of the input.
+     * 
+     * @param table the binned table
+     * @param exec to create the table
+     * @return a table of the keys without any columns, it references the
+     *  input instead of copying it
+     * @throws CanceledExecutionException if the execution was canceled
+     */
+    private static BufferedDataTable createKeyTable(
+            final BufferedDataTable table, final ExecutionContext exec) 
+        throws CanceledExecutionException {
+        ColumnRearranger keysOnly = 
+            new ColumnRearranger(table.getDataTableSpec());
+        keysOnly.keepOnly(new int[0]);
+        return exec.createColumnRearrangeTable(
+                table, keysOnly, exec.createSubProgress(0.0));
+    }
+    
+    /**
+     * @param inSpec the spec of the input table
+     * @return the bins of each selected column, <code>null</code> entries 
+     *  for columns whose data has to be scanned
+     */
+    private NumericBinModel[] createBinModels(final DataTableSpec inSpec) {
+        String[] columns = getSelectedColumns();
+        NumericBinModel[] models = new NumericBinModel[columns.length];
+        if (isEqualFrequency()) {
+            return models;
+        }
+        if (isFixedBounds()) {
+            // nothing to scan, outliers go to the first and the last bin
+            NumericBinModel model = NumericBinModel.createWithOutlierBins(
+                    m_lowerBound.getDoubleValue(), 
+                    m_upperBound.getDoubleValue(), 
+                    m_numberOfBins.getIntValue());
+            Arrays.fill(models, model);
+            return models;
+        }
+        for (int c = 0; c < columns.length; c++) {
+            models[c] = createModelFromSpec(inSpec, columns[c], 
+                    m_numberOfBins.getIntValue());
+            // all columns have the same number of bins
+            if (models[c] != null && isSampling()) {
+                models[c] = models[c].withOutlierBins();
+            }
+        }
+        return models;
+    }
+    
+    /**
+     * @param models the bins of each column
+     * @return true if the bins of all columns are known
+     */
+    private static boolean isComplete(final NumericBinModel[] models) {
+        for (NumericBinModel model : models) {
+            if (model == null) {
+                return false;
+            }
+        }
+        return true;
+    }
+    
+    /**
+     * Scans the data of all columns with unknown bins in one pass to 
+     * determine their bins.
+     * 
+     * @param models the bins of each selected column, the 
+     *  <code>null</code> entries are determined
+     * @param input the data to bin
+     * @param exec to report progress and check for cancellation
+     * @throws CanceledExecutionException if the execution was canceled
+     */
+    private void scanBinModels(final NumericBinModel[] models,
+            final BufferedDataTable input, final ExecutionMonitor exec) 
+        throws CanceledExecutionException {
+        String[] columns = getSelectedColumns();
+        List<Integer> scanned = new ArrayList<Integer>();
+        for (int c = 0; c < models.length; c++) {
+            if (models[c] == null) {
+                scanned.add(c);
+            }
+        }
+        int[] colIndices = new int[scanned.size()];
+        for (int i = 0; i < colIndices.length; i++) {
+            colIndices[i] = input.getDataTableSpec().findColumnIndex(
+                    columns[scanned.get(i)]);
+        }
+        NumericDomainCalculator calculator = new NumericDomainCalculator(
+                colIndices, 
+                isEqualFrequency() ? m_sketchSize.getIntValue() : 0);
+        if (isSampling()) {
+            calculator.setSampleSize(m_sampleSize.getIntValue());
+        }
+        long start = System.nanoTime();
+        calculator.calculate(input, exec);
+        m_metrics.addPhaseTime(Phase.DOMAIN_SCAN, start);
+        int nrOfBins = m_numberOfBins.getIntValue();
+        for (int i = 0; i < colIndices.length; i++) {
+            int c = scanned.get(i);
+            if (!calculator.hasValues(i)) {
+                setWarningMessage("Column " + columns[c] 
+                        + " contains no valid values.");
+                models[c] = NumericBinModel.createEquidistant(0, 0, nrOfBins);
+            } else if (isEqualFrequency()) {
+                models[c] = NumericBinModel.createEqualFrequency(
+                        calculator.getSketch(i), nrOfBins);
+            } else {
+                models[c] = NumericBinModel.createEquidistant(
+                        calculator.getMin(i), calculator.getMax(i), nrOfBins);
+            }
+            // integers are binned exactly, the maximum must not be rounded
+            if (calculator.hasValues(i) && calculator.isInteger(i)) {
+                models[c] = models[c].coverInteger(calculator.getLongMax(i));
+            }
+            // the bounds are estimated, values outside of them go to two 
+            // outlier bins; also added to small tables which are read 
+            // completely, the number of bins is fixed in configure
+            if (isSampling()) {
+                models[c] = models[c].withOutlierBins();
+            }
+        }
+    }
+    
+    private boolean isEqualFrequency() {
+        return METHOD_EQUAL_FREQUENCY.equals(
+                m_binningMethod.getStringValue());
+    }
+    
+    private boolean isFixedBounds() {
+        return METHOD_FIXED_BOUNDS.equals(m_binningMethod.getStringValue());
+    }
+    
+    private boolean isSampling() {
+        return m_sampleSize.getIntValue() > 0 && !isFixedBounds();
+    }
+    
+    /**
+     * @param inSpec the spec of the input table
+     * @param column the name of the column
+     * @param nrOfBins the number of bins
+     * @return the equidistant bins between the bounds of the column or 
+     *  <code>null</code> if the domain of the column has no bounds
+     */
+    private static NumericBinModel createModelFromSpec(
+            final DataTableSpec inSpec, final String column, 
+            final int nrOfBins) {
+        DataColumnSpec colSpec = inSpec.getColumnSpec(column);
+        if (colSpec == null) {
+            return null;
+        }
         DataColumnDomain domain = colSpec.getDomain();
-        // check if we have to calculate the lower and upper bound
-        if (domain == null 
-                || !domain.hasBounds()) {
-            domain = calculateDomainValues(inData[IN_PORT]);
+        if (domain == null || !domain.hasBounds()) {
+            return null;
         }
-        lowerBound = ((DoubleValue)domain.getLowerBound()).getDoubleValue();
-        upperBound = ((DoubleValue)domain.getUpperBound()).getDoubleValue();
-        
-        // we also need the data structure for the bins
-        m_bins = new NumericBin[m_numberOfBins.getIntValue()];
-        double interval = (upperBound - lowerBound) 
-                / (m_numberOfBins.getIntValue());
-        List<Double>splitPoints = new ArrayList<Double>(
-                m_numberOfBins.getIntValue());
-        double intervalUpperBound = lowerBound;
-        // create the external model
-        m_model = new NumericBinModel();
-        double intervalLowerBound = lowerBound;
-        for (int i = 0; i < m_numberOfBins.getIntValue(); i++) {
-            intervalLowerBound = intervalUpperBound;
-            intervalUpperBound += interval;
-            // fill the external model
-            m_model.addInterval(intervalLowerBound, intervalUpperBound);
-            splitPoints.add(intervalUpperBound);
-            // fill the bins with empty representations
-            m_bins[i] = new NumericBin();
+        DataCell upperBound = domain.getUpperBound();
+        double lower = ((DoubleValue)domain.getLowerBound()).getDoubleValue();
+        double upper = ((DoubleValue)upperBound).getDoubleValue();
+        if (!isFinite(lower) || !isFinite(upper)) {
+            // the scan determines the range of the finite values
+            return null;
         }
-        
-        // now go through the data and bin it first get the column index
-        int colIndex = inData[IN_PORT].getDataTableSpec()
-            .findColumnIndex(m_column.getStringValue());
-        
- 
-        // instantiate the cell factory
-        CellFactory cellFactory = new NumericBinnerCellFactory(
-                createOutputColumnSpec(), splitPoints, colIndex, m_bins);
-        // create the column rearranger
-        ColumnRearranger outputTable = new ColumnRearranger(
-                inData[IN_PORT].getDataTableSpec());
-        // append the new column
-        outputTable.append(cellFactory);
-        // and create the actual output table
-        BufferedDataTable bufferedOutput = exec.createColumnRearrangeTable(
-                inData[IN_PORT], outputTable, exec);
-        // return it
-        return new BufferedDataTable[]{bufferedOutput};
+        NumericBinModel model = 
+            NumericBinModel.createEquidistant(lower, upper, nrOfBins);
+        // integers are binned exactly, the maximum must not be rounded
+        if (upperBound instanceof LongValue) {
+            model = model.coverInteger(
+                    ((LongValue)upperBound).getLongValue());
+        }
+        return model;
+    }
+    
+    private static boolean isFinite(final double value) {
+        return !Double.isNaN(value) && !Double.isInfinite(value);
+    }
+    
+    // ************* streaming ****************
+    
+    /** {@inheritDoc} */
+    @Override
+    public InputPortRole[] getInputPortRoles() {
+        // without bounds the input has to be read twice
+        if (m_singlePass) {
+            return new InputPortRole[]{
+                    InputPortRole.NONDISTRIBUTED_STREAMABLE};
+        }
+        return new InputPortRole[]{
+                InputPortRole.NONDISTRIBUTED_NONSTREAMABLE};
+    }
+    
+    /** {@inheritDoc} */
+    @Override
+    public OutputPortRole[] getOutputPortRoles() {
+        // all rows must pass the same bins
+        return new OutputPortRole[]{OutputPortRole.NONDISTRIBUTED, 
+                OutputPortRole.NONDISTRIBUTED, OutputPortRole.NONDISTRIBUTED};
+    }
+    
+    /** {@inheritDoc} */
+    @Override
+    public StreamableOperator createStreamableOperator(
+            final PartitionInfo partitionInfo, 
+            final PortObjectSpec[] inSpecs) throws InvalidSettingsException {
+        return new StreamableOperator() {
+            /** {@inheritDoc} */
+            @Override
+            public void runFinal(final PortInput[] inputs, 
+                    final PortOutput[] outputs, final ExecutionContext exec)
+                    throws Exception {
+                startMetrics();
+                RowInput input;
+                NumericBinModel[] models;
+                // the keys in the order of the row ordinals, only needed
+                // if the input is no table
+                BufferedDataContainer keys = null;
+                if (inputs[IN_PORT] instanceof RowInput) {
+                    input = (RowInput)inputs[IN_PORT];
+                    models = createBinModels(input.getDataTableSpec());
+                    if (isCollectingRows()) {
+                        keys = exec.createDataContainer(new DataTableSpec());
+                    }
+                    m_keyResolver.setTable(null);
+                } else {
+                    // bins depend on the data: the whole table is available
+                    // and scanned first
+                    BufferedDataTable table = (BufferedDataTable)
+                        ((PortObjectInput)inputs[IN_PORT]).getPortObject();
+                    models = createBinModels(table.getDataTableSpec());
+                    if (!isComplete(models)) {
+                        scanBinModels(models, table, 
+                                exec.createSubProgress(0.5));
+                    }
+                    input = new DataTableRowInput(table);
+                    m_keyResolver.setTable(isCollectingRows() 
+                            ? createKeyTable(table, exec) : null);
+                }
+                NumericBinnerCellFactory cellFactory = createCellFactory(
+                        input.getDataTableSpec(), models);
+                RowOutput output = (RowOutput)outputs[DATA_OUT_PORT];
+                // the keys are collected while binning
+                long start = System.nanoTime();
+                long rowNr = 0;
+                DataRow row;
+                while ((row = input.poll()) != null) {
+                    output.push(new AppendedColumnRow(
+                            row, cellFactory.getCells(row)));
+                    if (keys != null) {
+                        keys.addRowToTable(new DefaultRow(row.getKey()));
+                    }
+                    if (++rowNr % NumericDomainCalculator.CHUNK_SIZE == 0) {
+                        exec.checkCanceled();
+                        exec.setMessage("Binned row " + rowNr);
+                    }
+                }
+                input.close();
+                output.close();
+                m_metrics.addPhaseTime(Phase.BINNING, start);
+                m_metrics.setRowCount(rowNr);
+                start = System.nanoTime();
+                if (keys != null) {
+                    keys.close();
+                    m_keyResolver.setTable(keys.getTable());
+                }
+                finishBins(cellFactory);
+                m_metrics.addPhaseTime(Phase.KEY_COLLECTION, start);
+                pushMetrics();
+                ((PortObjectOutput)outputs[MODEL_OUT_PORT]).setPortObject(
+                        new NumericBinModelPortObject(
+                                m_binnedColumns, m_models));
+                RowOutput statistics = 
+                    (RowOutput)outputs[STATISTICS_OUT_PORT];
+                for (DataRow statisticsRow 
+                        : createStatisticsRows(cellFactory)) {
+                    statistics.push(statisticsRow);
+                }
+                statistics.close();
+            }
+        };
     }
        
-    private DataColumnDomain calculateDomainValues(
-            final BufferedDataTable input) {
-        int colIndex = input.getDataTableSpec().findColumnIndex(
-                m_column.getStringValue());
-        double lowerBound = Double.MAX_VALUE;
-        double upperBound = Double.MIN_VALUE;
-        for (DataRow currRow : input) {
-            DataCell currCell = currRow.getCell(colIndex);
-            double currValue = ((DoubleValue)currCell).getDoubleValue();
-            lowerBound = Math.min(lowerBound, currValue);
-            upperBound = Math.max(upperBound, currValue);
-        }
-        DataColumnDomainCreator domainCreator = new DataColumnDomainCreator();
-        domainCreator.setLowerBound(new DoubleCell(lowerBound));
-        domainCreator.setUpperBound(new DoubleCell(upperBound));
-        return domainCreator.createDomain();
-    }  
-        
+    // takes the filled bins and releases their unused capacity
+    private void finishBins(final NumericBinnerCellFactory cellFactory) {
+        NumericColumnBinner[] binners = cellFactory.getBinners();
+        m_bins = new NumericBin[binners.length][];
+        // the memberships are largest before they are trimmed
+        long membershipMemory = 0;
+        for (int c = 0; c < binners.length; c++) {
+            m_bins[c] = binners[c].getBins();
+            m_metrics.updateBinSkew(binners[c].getCounts());
+            for (NumericBin bin : m_bins[c]) {
+                RowOrdinalSet rows = bin.getRowsInMemory();
+                if (rows != null) {
+                    membershipMemory += rows.getMemoryUsage();
+                    rows.trim();
+                }
+            }
+        }
+        if (m_spill != null) {
+            membershipMemory = Math.max(membershipMemory, 
+                    m_spill.getPeakMemory());
+        }
+        m_metrics.updateMembershipMemory(membershipMemory);
+    }
+    
+    /**
+     * @param valueStatistics true if the statistics contain sum, mean, 
+     *  minimum and maximum of the values
+     * @return the spec of the table with one row per bin
+     */
+    private static DataTableSpec createStatisticsSpec(
+            final boolean valueStatistics) {
+        List<DataColumnSpec> specs = new ArrayList<DataColumnSpec>();
+        specs.add(new DataColumnSpecCreator(
+                "Column", StringCell.TYPE).createSpec());
+        specs.add(new DataColumnSpecCreator(
+                "Bin Number", IntCell.TYPE).createSpec());
+        specs.add(new DataColumnSpecCreator(
+                "Lower Bound", DoubleCell.TYPE).createSpec());
+        specs.add(new DataColumnSpecCreator(
+                "Upper Bound", DoubleCell.TYPE).createSpec());
+        specs.add(new DataColumnSpecCreator(
+                "Count", LongCell.TYPE).createSpec());
+        if (valueStatistics) {
+            for (String name : new String[]{
+                    "Sum", "Mean", "Minimum", "Maximum"}) {
+                specs.add(new DataColumnSpecCreator(
+                        name, DoubleCell.TYPE).createSpec());
+            }
+        }
+        return new DataTableSpec(
+                specs.toArray(new DataColumnSpec[specs.size()]));
+    }
+    
+    /**
+     * @param cellFactory the factory which binned the rows
+     * @return one row per bin of each column with its bounds, its number 
+     *  of rows and optionally the statistics of its values
+     */
+    private List<DataRow> createStatisticsRows(
+            final NumericBinnerCellFactory cellFactory) {
+        NumericColumnBinner[] binners = cellFactory.getBinners();
+        List<DataRow> rows = new ArrayList<DataRow>();
+        for (int c = 0; c < binners.length; c++) {
+            NumericColumnBinner binner = binners[c];
+            NumericBinModel model = m_models[c];
+            long[] counts = binner.getCounts();
+            for (int i = 0; i < counts.length; i++) {
+                List<DataCell> cells = new ArrayList<DataCell>();
+                cells.add(new StringCell(m_binnedColumns[c]));
+                cells.add(new IntCell(i));
+                cells.add(new DoubleCell(model.getLowerBoundForInterval(i)));
+                cells.add(new DoubleCell(model.getUpperBoundForInterval(i)));
+                cells.add(new LongCell(counts[i]));
+                if (binner.hasValueStatistics()) {
+                    double sum = binner.getSums()[i];
+                    cells.add(new DoubleCell(sum));
+                    if (counts[i] == 0) {
+                        // an empty bin has no mean, minimum and maximum
+                        for (int k = 0; k < 3; k++) {
+                            cells.add(DataType.getMissingCell());
+                        }
+                    } else {
+                        cells.add(new DoubleCell(sum / counts[i]));
+                        cells.add(new DoubleCell(binner.getMins()[i]));
+                        cells.add(new DoubleCell(binner.getMaxs()[i]));
+                    }
+                }
+                rows.add(new DefaultRow(RowKey.createRowKey(rows.size()), 
+                        cells.toArray(new DataCell[cells.size()])));
+            }
+        }
+        return rows;
+    }
+    
+    // forgets the metrics of the previous execution 
+    private void startMetrics() {
+        m_metrics.reset();
+        m_metrics.register(getClass().getSimpleName() + "@" 
+                + Integer.toHexString(System.identityHashCode(this)));
+    }
+    
+    // the metrics of the execution as flow variables, writing the 
+    // internals happens after the execution and is only available by JMX
+    private void pushMetrics() {
+        pushFlowVariableInt(FLOW_VARIABLE_PREFIX + "domainScanMillis", 
+                (int)m_metrics.getDomainScanMillis());
+        pushFlowVariableInt(FLOW_VARIABLE_PREFIX + "binningMillis", 
+                (int)m_metrics.getBinningMillis());
+        pushFlowVariableInt(FLOW_VARIABLE_PREFIX + "keyCollectionMillis", 
+                (int)m_metrics.getKeyCollectionMillis());
+        pushFlowVariableDouble(FLOW_VARIABLE_PREFIX + "rowsPerSecond", 
+                m_metrics.getRowsPerSecond());
+        pushFlowVariableDouble(FLOW_VARIABLE_PREFIX + "peakMembershipBytes", 
+                m_metrics.getPeakMembershipMemory());
+        pushFlowVariableDouble(FLOW_VARIABLE_PREFIX + "binSkew", 
+                m_metrics.getBinSkew());
+    }
+    
     /**
-     * @return the representation of the bins.
+     * @return the metrics of the last execution
      */
-    public NumericBin[] getBinRepresentations() {
-        return m_bins;
+    public NumericBinnerMetrics getMetrics() {
+        return m_metrics;
+    }
+    
+    /** {@inheritDoc} */
+    @Override
+    protected void onDispose() {
+        m_metrics.unregister();
+        closeSpill();
+        deleteInternals();
+    }
+    
+    /**
+     * @return translates the row ordinals of the bins into row keys
+     */
+    public RowKeyResolver getRowKeyResolver() {
+        return m_keyResolver;
+    }
+    
+    /**
+     * @return the names of the binned columns or <code>null</code> if the 
+     * node is not executed
+     */
+    public String[] getBinnedColumns() {
+        return m_binnedColumns;
+    }
+    
+    /**
+     * @param column the position of the column in the binned columns
+     * @return the representation of the bins of the column.
+     */
+    public NumericBin[] getBinRepresentations(final int column) {
+        return m_bins[column];
     }    
+    
+    /**
+     * @param column the position of the column in the binned columns
+     * @return the intervals of the bins of the column, <code>null</code> if
+     * they are unknown
+     */
+    public NumericBinModel getBinModel(final int column) {
+        return m_models[column];
+    }
 
     /** {@inheritDoc} */
     @Override
     protected void reset() {
+        m_binnedColumns = null;
         m_bins = null;
+        m_models = null;
+        m_keyResolver.setTable(null);
+        closeSpill();
+        deleteInternals();
+    }
+    
+    private void deleteInternals() {
+        if (m_internals != null) {
+            m_internals.delete();
+            m_internals = null;
+        }
     }
 
     /** {@inheritDoc} */
     @Override
-    protected DataTableSpec[] configure(final DataTableSpec[] inSpecs)
+    protected PortObjectSpec[] configure(final PortObjectSpec[] inSpecs)
             throws InvalidSettingsException {
+        DataTableSpec inSpec = (DataTableSpec)inSpecs[IN_PORT];
         // first of all validate the incoming data table spec
-        boolean hasNumericColumn = false;
-        boolean containsName = false;
-        for (int i = 0; i < inSpecs[IN_PORT].getNumColumns(); i++) {
-            DataColumnSpec columnSpec = inSpecs[IN_PORT].getColumnSpec(i);
-            // we can only work with it, if it contains at least one 
-            // numeric column
-            if (columnSpec.getType().isCompatible(DoubleValue.class)) {
-                // found one numeric column
-                hasNumericColumn = true;
+        String[] columns = getSelectedColumns();
+        if (columns.length == 0) {
+            throw new InvalidSettingsException("No columns selected. Please "
+                    + "(re-)configure the node.");
+        }
+        for (String column : columns) {
+            DataColumnSpec columnSpec = 
+                inSpec.getColumnSpec(column);
+            // each selected column must be contained in the data table spec
+            if (columnSpec == null) {
+                throw new InvalidSettingsException("Input table contains not "
+                        + "the column " + column + ". Please "
+                        + "(re-)configure the node.");
             }
-            // and if the column name is set it must be contained in the data 
-            // table spec
-            if (m_column != null 
-                    && columnSpec.getName().equals(m_column.getStringValue())) {
-                containsName = true;
+            // and we can only work with numeric columns
+            if (!columnSpec.getType().isCompatible(DoubleValue.class)) {
+                throw new InvalidSettingsException("Column " + column 
+                        + " is not numeric.");
             }
-            
-        }
-        if (!hasNumericColumn) {
-            throw new InvalidSettingsException("Input table must contain at " 
-                    + "least one numeric column");
-        }
-        
-        if (!containsName) {
-            throw new InvalidSettingsException("Input table contains not the " 
-                    + "column " + m_column.getStringValue() + ". Please "
-                    + "(re-)configure the node.");
         }
         
         // so far the input is checked and the algorithm can work with the 
         // incoming data
+        m_singlePass = isComplete(createBinModels(inSpec));
         
         // now produce the output table spec,  
         // i.e. specify the output of this node
-        DataColumnSpec newColumnSpec = createOutputColumnSpec();
+        int[] numbersOfBins = new int[columns.length];
+        // fixed and sampled bounds add a bin for the values below and 
+        // above them
+        Arrays.fill(numbersOfBins, m_numberOfBins.getIntValue() 
+                + (isFixedBounds() || isSampling() ? 2 : 0));
+        DataColumnSpec[] newColumnSpecs = 
+            createOutputColumnSpecs(columns, numbersOfBins);
         // and the DataTableSpec for the appended part
-        DataTableSpec appendedSpec = new DataTableSpec(newColumnSpec);
+        DataTableSpec appendedSpec = new DataTableSpec(newColumnSpecs);
         // since it is only appended the new output spec contains both:
         // the original spec and the appended one
         DataTableSpec outputSpec = new DataTableSpec(
-                inSpecs[IN_PORT], appendedSpec);
-        return new DataTableSpec[]{outputSpec};
+                inSpec, appendedSpec);
+        // the number of bins is known, their bounds maybe not
+        return new PortObjectSpec[]{outputSpec, 
+                new NumericBinModelPortObjectSpec(columns, numbersOfBins),
+                createStatisticsSpec(m_valueStatistics.getBooleanValue())};
     } 
     
-    private DataColumnSpec createOutputColumnSpec() {
-        // we want to add a column with the number of the bin 
-        DataColumnSpecCreator colSpecCreator = new DataColumnSpecCreator(
-                "Bin Number", IntCell.TYPE);
-        // if we know the number of bins we also know the number of possible
-        // values of that new column
-        DataColumnDomainCreator domainCreator = new DataColumnDomainCreator(
-                new IntCell(0), new IntCell(m_numberOfBins.getIntValue() - 1));
-        // and can add this domain information to the output spec
-        colSpecCreator.setDomain(domainCreator.createDomain());
-        // now the column spec can be created
-        DataColumnSpec newColumnSpec = colSpecCreator.createSpec();
-        return newColumnSpec;
+    /**
+     * Creates the specs of the columns containing the bin numbers, they
+     * are shared with the NumericBinner Apply node.
+     * 
+     * @param columns the names of the binned columns
+     * @param numbersOfBins the number of bins of each column
+     * @return the specs of the appended columns
+     */
+    static DataColumnSpec[] createOutputColumnSpecs(final String[] columns, 
+            final int[] numbersOfBins) {
+        DataColumnSpec[] newColumnSpecs = new DataColumnSpec[columns.length];
+        for (int c = 0; c < columns.length; c++) {
+            // if we know the number of bins we also know the number of 
+            // possible values of the new columns
+            DataColumnDomainCreator domainCreator = 
+                new DataColumnDomainCreator(new IntCell(0), 
+                        new IntCell(numbersOfBins[c] - 1));
+            // we want to add a column with the number of the bin, a single 
+            // column keeps the name of older versions
+            String name = columns.length == 1 
+                ? "Bin Number" : "Bin Number (" + columns[c] + ")";
+            DataColumnSpecCreator colSpecCreator = 
+                new DataColumnSpecCreator(name, IntCell.TYPE);
+            // and can add this domain information to the output spec
+            colSpecCreator.setDomain(domainCreator.createDomain());
+            // now the column spec can be created
+            newColumnSpecs[c] = colSpecCreator.createSpec();
+        }
+        return newColumnSpecs;
     }    
 
     /** {@inheritDoc} */
@@ -268,7 +958,15 @@ public class NumericBinnerNodeModel extends NodeModel {
     protected void saveSettingsTo(final NodeSettingsWO settings) {
         // save settings to the config object.
         m_numberOfBins.saveSettingsTo(settings);
-        m_column.saveSettingsTo(settings);
+        m_columns.saveSettingsTo(settings);
+        m_binningMethod.saveSettingsTo(settings);
+        m_sketchSize.saveSettingsTo(settings);
+        m_lowerBound.saveSettingsTo(settings);
+        m_upperBound.saveSettingsTo(settings);
+        m_sampleSize.saveSettingsTo(settings);
+        m_hiliteSupport.saveSettingsTo(settings);
+        m_valueStatistics.saveSettingsTo(settings);
+        m_membershipBudget.saveSettingsTo(settings);
     }
 
     /** {@inheritDoc} */
@@ -278,7 +976,50 @@ public class NumericBinnerNodeModel extends NodeModel {
         // loads the values from the settings into the models. It can be safely 
         // assumed that the settings are validated by the method below
         m_numberOfBins.loadSettingsFrom(settings);
-        m_column.loadSettingsFrom(settings);
+        // older versions bin a single column
+        if (settings.containsKey(CFGKEY_COLUMN_NAMES)) {
+            m_columns.loadSettingsFrom(settings);
+        } else {
+            m_columns.setIncludeList(new String[]{
+                    settings.getString(CFGKEY_COLUMN_NAME)});
+            m_columns.setExcludeList(new String[0]);
+        }
+        // settings written by older versions only know equidistant bins
+        if (settings.containsKey(CFGKEY_BINNING_METHOD)) {
+            m_binningMethod.loadSettingsFrom(settings);
+            m_sketchSize.loadSettingsFrom(settings);
+        } else {
+            m_binningMethod.setStringValue(METHOD_EQUIDISTANT);
+        }
+        // older versions have no fixed bounds
+        if (settings.containsKey(CFGKEY_LOWER_BOUND)) {
+            m_lowerBound.loadSettingsFrom(settings);
+            m_upperBound.loadSettingsFrom(settings);
+        }
+        // older versions read all rows
+        if (settings.containsKey(CFGKEY_SAMPLE_SIZE)) {
+            m_sampleSize.loadSettingsFrom(settings);
+        } else {
+            m_sampleSize.setIntValue(0);
+        }
+        // older versions always kept the rows
+        if (settings.containsKey(CFGKEY_HILITE_SUPPORT)) {
+            m_hiliteSupport.loadSettingsFrom(settings);
+        } else {
+            m_hiliteSupport.setStringValue(HILITE_ALWAYS);
+        }
+        // older versions have no statistics output
+        if (settings.containsKey(CFGKEY_VALUE_STATISTICS)) {
+            m_valueStatistics.loadSettingsFrom(settings);
+        } else {
+            m_valueStatistics.setBooleanValue(false);
+        }
+        // older versions keep all rows in memory, use the default budget
+        if (settings.containsKey(CFGKEY_MEMBERSHIP_BUDGET)) {
+            m_membershipBudget.loadSettingsFrom(settings);
+        } else {
+            m_membershipBudget.setIntValue(0);
+        }
 
     }
 
@@ -288,7 +1029,65 @@ public class NumericBinnerNodeModel extends NodeModel {
             throws InvalidSettingsException {
         // delegate this to the settings models
         m_numberOfBins.validateSettings(settings);
-        m_column.validateSettings(settings);
+        if (settings.containsKey(CFGKEY_COLUMN_NAMES)) {
+            m_columns.validateSettings(settings);
+        } else {
+            settings.getString(CFGKEY_COLUMN_NAME);
+        }
+        if (settings.containsKey(CFGKEY_BINNING_METHOD)) {
+            m_binningMethod.validateSettings(settings);
+            m_sketchSize.validateSettings(settings);
+            String method = settings.getString(CFGKEY_BINNING_METHOD);
+            if (!Arrays.asList(BINNING_METHODS).contains(method)) {
+                throw new InvalidSettingsException(
+                        "Unknown binning method: " + method);
+            }
+            if (METHOD_FIXED_BOUNDS.equals(method)) {
+                double lower = settings.getDouble(CFGKEY_LOWER_BOUND);
+                double upper = settings.getDouble(CFGKEY_UPPER_BOUND);
+                if (Double.isInfinite(lower) || Double.isInfinite(upper) 
+                        || !(lower < upper)) {
+                    throw new InvalidSettingsException("The lower bound (" 
+                            + lower + ") must be smaller than the upper "
+                            + "bound (" + upper + ")");
+                }
+            }
+        }
+        if (settings.containsKey(CFGKEY_HILITE_SUPPORT)) {
+            m_hiliteSupport.validateSettings(settings);
+            String hiliteSupport = settings.getString(CFGKEY_HILITE_SUPPORT);
+            if (!Arrays.asList(HILITE_OPTIONS).contains(hiliteSupport)) {
+                throw new InvalidSettingsException(
+                        "Unknown hilite support: " + hiliteSupport);
+            }
+        }
+        if (settings.containsKey(CFGKEY_VALUE_STATISTICS)) {
+            m_valueStatistics.validateSettings(settings);
+        }
+        if (settings.containsKey(CFGKEY_MEMBERSHIP_BUDGET)) {
+            m_membershipBudget.validateSettings(settings);
+        }
+        if (settings.containsKey(CFGKEY_SAMPLE_SIZE)) {
+            m_sampleSize.validateSettings(settings);
+        }
+    }
+    
+    /** {@inheritDoc} */
+    @Override
+    public BufferedDataTable[] getInternalTables() {
+        BufferedDataTable keyTable = m_keyResolver.getTable();
+        if (keyTable == null) {
+            return null;
+        }
+        return new BufferedDataTable[]{keyTable};
+    }
+    
+    /** {@inheritDoc} */
+    @Override
+    public void setInternalTables(final BufferedDataTable[] tables) {
+        if (tables != null && tables.length > 0) {
+            m_keyResolver.setTable(tables[0]);
+        }
     }
     
     /** {@inheritDoc} */
@@ -296,20 +1095,50 @@ public class NumericBinnerNodeModel extends NodeModel {
     protected void loadInternals(final File internDir,
             final ExecutionMonitor exec) throws IOException,
             CanceledExecutionException {
-        m_bins = new NumericBin[m_numberOfBins.getIntValue()];
-        File file = new File(internDir, FILE_NAME);
+        File file = new File(internDir, NumericBinnerInternals.FILE_NAME);
+        deleteInternals();
+        if (file.exists()) {
+            // the rows of the bins are only read if they are requested
+            m_internals = NumericBinnerInternals.load(file, m_keyResolver);
+            m_binnedColumns = m_internals.getColumnNames();
+            m_models = m_internals.getModels();
+            m_bins = m_internals.getBins();
+            if (m_internals.getKeys() != null) {
+                // migrated from the XML internals, no internal table
+                m_keyResolver.setKeys(m_internals.getKeys());
+            }
+        } else {
+            loadLegacyInternals(new File(internDir, LEGACY_FILE_NAME));
+        }
+    }
+    
+    private void loadLegacyInternals(final File file) throws IOException {
         FileInputStream fis = new FileInputStream(file);
-        ModelContentRO modelContent = ModelContent.loadFromXML(fis);
         try {
-            for (int i = 0; i < m_numberOfBins.getIntValue(); i++) {
-                NumericBin bin = new NumericBin();
+            ModelContentRO modelContent = ModelContent.loadFromXML(fis);
+            // the XML internals contain a single column
+            m_binnedColumns = new String[]{getSelectedColumns()[0]};
+            m_models = new NumericBinModel[1];
+            m_bins = new NumericBin[1][];
+            // the XML internals contain no bin model
+            int nrOfBins = m_numberOfBins.getIntValue();
+            m_bins[0] = new NumericBin[nrOfBins];
+            List<RowKey> legacyKeys = new ArrayList<RowKey>();
+            for (int i = 0; i < nrOfBins; i++) {
                 ModelContentRO subModelContent = modelContent
                         .getModelContent(NUMERIC_BIN + i);
-                bin.loadFrom(subModelContent);
-                m_bins[i] = bin;
+                m_bins[0][i] = NumericBin.loadFrom(subModelContent, 
+                        m_keyResolver, legacyKeys);
+            }
+            if (!legacyKeys.isEmpty()) {
+                // no internal table in older versions, keep the keys
+                m_keyResolver.setKeys(
+                        legacyKeys.toArray(new RowKey[legacyKeys.size()]));
             }
         } catch (InvalidSettingsException e) {
             throw new IOException(e.getMessage());
+        } finally {
+            fis.close();
         }
     }
     
@@ -318,22 +1147,19 @@ public class NumericBinnerNodeModel extends NodeModel {
     protected void saveInternals(final File internDir,
             final ExecutionMonitor exec) throws IOException,
             CanceledExecutionException {
+        // internDir is the directory for this node
+        File file = new File(internDir, NumericBinnerInternals.FILE_NAME);
+        // always written, the directory may have been cleared; deferred
+        // rows are read from the private copy of the loaded internals
         if (m_bins != null) {
-            // create the main model content
-            ModelContent modelContent = new ModelContent(INTERNAL_MODEL);
-            for (int i = 0; i < m_bins.length; i++) {
-                // for each bin create a sub model content
-                ModelContentWO subContent = modelContent
-                        .addModelContent(NUMERIC_BIN + i);
-                // save the bin to the sub model content
-                m_bins[i].saveTo(subContent);
-            }
-            // now all bins are stored to the model content
-            // but the model content must be written to XML
-            // internDir is the directory for this node
-            File file = new File(internDir, FILE_NAME);
-            FileOutputStream fos = new FileOutputStream(file);
-            modelContent.saveToXML(fos);
+            long start = System.nanoTime();
+            // keys without internal table are stored in the file, else 
+            // hiliting would not survive the migration of XML internals
+            RowKey[] keys = m_keyResolver.getTable() == null 
+                && m_keyResolver.hasKeys() ? m_keyResolver.getKeys() : null;
+            NumericBinnerInternals.save(file, m_binnedColumns, m_models, 
+                    m_bins, keys, exec);
+            m_metrics.addPhaseTime(Phase.SAVE_INTERNALS, start);
         }
     }
 
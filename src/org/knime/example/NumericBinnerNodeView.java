@@ -19,15 +19,20 @@
  */
 package org.knime.example;
 
+import java.awt.BorderLayout;
+import java.awt.Point;
+import java.awt.Rectangle;
 import java.awt.event.ActionEvent;
 import java.awt.event.ActionListener;
 import java.awt.event.MouseAdapter;
 import java.awt.event.MouseEvent;
-import java.util.LinkedHashSet;
 import java.util.Set;
 
+import javax.swing.DefaultComboBoxModel;
+import javax.swing.JComboBox;
 import javax.swing.JMenu;
 import javax.swing.JMenuItem;
+import javax.swing.JPanel;
 
 import org.knime.core.data.RowKey;
 import org.knime.core.node.NodeView;
@@ -43,15 +48,25 @@ import org.knime.core.node.property.hilite.KeyEvent;
 public class NumericBinnerNodeView extends NodeView<NumericBinnerNodeModel> 
         implements HiLiteListener {
     
+    // the pixels the mouse must be dragged to select a range of bins
+    private static final int DRAG_DISTANCE = 3;
+    
     private final JMenuItem m_hilite;
     
     private final JMenuItem m_unhilite;
     
-    private final Set<NumericBin> m_selected;
-    
     // panel which actually paints the bins
     private final NumericBinnerViewPanel m_panel;
     
+    // selects the binned column whose bins are displayed
+    private final JComboBox m_columnSelection;
+    
+    // the hilited rows of the displayed bins, created on the first hilite
+    // event, null if the bins cannot be hilited
+    private BinHiliteIndex m_hiliteIndex;
+    
+    private boolean m_canHilite;
+    
     /**
      * Creates a new view.
      * 
@@ -61,35 +76,75 @@ public class NumericBinnerNodeView extends NodeView<NumericBinnerNodeModel>
         super(nodeModel);
         // init empty panel, #modelChanged() will add bins
         m_panel = new NumericBinnerViewPanel(new NumericBin[0]);
+        m_columnSelection = new JComboBox();
+        m_columnSelection.addActionListener(new ActionListener() {
+            /** {@inheritDoc} */
+            @Override
+            public void actionPerformed(final ActionEvent e) {
+                showSelectedColumn();
+            }
+        });
+        JPanel content = new JPanel(new BorderLayout());
+        content.add(m_columnSelection, BorderLayout.NORTH);
+        content.add(m_panel, BorderLayout.CENTER);
         // sets the view content in the node view
-        setComponent(m_panel);
+        setComponent(content);
         
         //************* mouse listener for selection of a bin *****************
         
-        // add a mouse listener in order to determine the selected bins
-        m_selected = new LinkedHashSet<NumericBin>();
-        m_panel.addMouseListener(new MouseAdapter() {
+        // add a mouse listener in order to determine the selected bins,
+        // either by a click or by dragging a rectangle over them
+        MouseAdapter selectionListener = new MouseAdapter() {
+            
+            private Point m_dragStart;
+            
+            private Rectangle m_rubberBand;
+            
+            /** {@inheritDoc} */
+            @Override
+            public void mousePressed(final MouseEvent e) {
+                m_dragStart = e.getPoint();
+                m_rubberBand = null;
+            }
+            
+            /** {@inheritDoc} */
+            @Override
+            public void mouseDragged(final MouseEvent e) {
+                if (m_dragStart == null) {
+                    return;
+                }
+                m_rubberBand = new Rectangle(m_dragStart);
+                m_rubberBand.add(e.getPoint());
+                m_panel.setRubberBand(m_rubberBand);
+            }
+            
             /** {@inheritDoc} */
             @Override
             public void mouseReleased(final MouseEvent e) {
+                Rectangle rubberBand = m_rubberBand;
+                m_dragStart = null;
+                m_rubberBand = null;
+                if (rubberBand != null) {
+                    m_panel.setRubberBand(null);
+                }
+                if (rubberBand != null && (rubberBand.width > DRAG_DISTANCE 
+                        || rubberBand.height > DRAG_DISTANCE)) {
+                    m_panel.setSelected(m_panel.getBinsIn(rubberBand), 
+                            e.isControlDown());
+                    return;
+                }
                 if (!e.isControlDown()) {
-                    m_selected.clear();
-                    for (NumericBin bin : m_panel.getBins()) {
-                        bin.setSelected(false);
-                    }
+                    m_panel.clearSelection();
                 }
-                for (NumericBin bin : m_panel.getBins()) {
-                    if (bin.getViewRepresentation() != null 
-                            && bin.getViewRepresentation().contains(
-                                    e.getX(), e.getY())) {
-                        bin.setSelected(true);
-                        m_selected.add(bin);
-                        break;
-                    }
+                // only a click on the bar selects the bin
+                int bin = m_panel.getBinAt(e.getX(), e.getY());
+                if (bin >= 0) {
+                    m_panel.setSelected(bin, true);
                 }
-                m_panel.repaint();
             }
-        });
+        };
+        m_panel.addMouseListener(selectionListener);
+        m_panel.addMouseMotionListener(selectionListener);
         
         //************** the hilite menu **************************
         
@@ -100,11 +155,10 @@ public class NumericBinnerNodeView extends NodeView<NumericBinnerNodeModel>
             /** {@inheritDoc} */
             @Override
             public void actionPerformed(final ActionEvent e) {
-                final Set<RowKey> toBeHilited = new LinkedHashSet<RowKey>();
-                for (NumericBin bin : m_selected) {
-                    // store all row ids from the selected bin
-                    toBeHilited.addAll(bin.getRowKeys());
-                }
+                // the row ids of the selected bins, read while the event
+                // is processed
+                final Set<RowKey> toBeHilited = new BinRowKeySet(
+                        m_panel.getBins(), m_panel.getSelectedBins());
                 // now get the hilite handler and hilite the rows
                 m_hiliteHandler.fireHiLiteEvent(
                         new KeyEvent(this, toBeHilited));
@@ -116,11 +170,9 @@ public class NumericBinnerNodeView extends NodeView<NumericBinnerNodeModel>
             /** {@inheritDoc} */
             @Override
             public void actionPerformed(final ActionEvent e) {
-                Set<RowKey> toBeUnhilited = new LinkedHashSet<RowKey>();
-                for (NumericBin bin : m_selected) {
-                    // store all row ids that should be unhilited
-                    toBeUnhilited.addAll(bin.getRowKeys());
-                }
+                // the row ids that should be unhilited
+                Set<RowKey> toBeUnhilited = new BinRowKeySet(
+                        m_panel.getBins(), m_panel.getSelectedBins());
                 // get the hilite handler and unhilite the rows
                 m_hiliteHandler.fireUnHiLiteEvent(
                         new KeyEvent(this, toBeUnhilited));
@@ -163,13 +215,48 @@ public class NumericBinnerNodeView extends NodeView<NumericBinnerNodeModel>
                 m_hiliteHandler.addHiLiteListener(this);
             }
         }
-        // if the model had changed get the new bins
-        NumericBin[] bins = getNodeModel().getBinRepresentations();
+        // if the model had changed get the new columns, keep the 
+        // displayed one if it is still binned
+        Object shown = m_columnSelection.getSelectedItem();
+        String[] columns = getNodeModel().getBinnedColumns();
+        m_columnSelection.setModel(new DefaultComboBoxModel(
+                columns != null ? columns : new String[0]));
+        if (shown != null) {
+            m_columnSelection.setSelectedItem(shown);
+        }
+        m_columnSelection.setVisible(columns != null && columns.length > 1);
+        showSelectedColumn();
+    }
+    
+    // displays the bins of the column selected in the combo box
+    private void showSelectedColumn() {
+        m_hiliteIndex = null;
+        int column = m_columnSelection.getSelectedIndex();
+        NumericBin[] bins = null;
+        if (column >= 0) {
+            bins = getNodeModel().getBinRepresentations(column);
+        }
+        // bins which only count their rows cannot be hilited
+        m_canHilite = bins != null && bins.length > 0 
+            && bins[0].hasRowKeys();
+        m_hilite.setEnabled(m_canHilite);
+        m_unhilite.setEnabled(m_canHilite);
         if (bins != null && bins.length > 0 && m_panel != null) {
+            // hilite events are only applied to the displayed bins
+            for (NumericBin bin : bins) {
+                bin.setHiliteCount(0);
+            }
             // and paint the bins
-            m_panel.updateView(bins);
+            m_panel.updateView(bins, getNodeModel().getBinModel(column));
+            // rows of loaded bins are only read if some of them are hilited
+            if (m_canHilite && m_hiliteHandler != null) {
+                Set<RowKey> hilited = m_hiliteHandler.getHiLitKeys();
+                if (!hilited.isEmpty()) {
+                    m_panel.hiliteChanged(getHiliteIndex().hilite(hilited));
+                }
+            }
         } else {
-            m_panel.updateView(new NumericBin[0]);
+            m_panel.updateView(new NumericBin[0], null);
         }
     }
 
@@ -188,44 +275,49 @@ public class NumericBinnerNodeView extends NodeView<NumericBinnerNodeModel>
         // no op
     }
 
+    /**
+     * @return the hilite index of the displayed bins, which is built on 
+     *  the first call
+     */
+    private BinHiliteIndex getHiliteIndex() {
+        if (m_hiliteIndex == null) {
+            m_hiliteIndex = new BinHiliteIndex(m_panel.getBins(), 
+                    getNodeModel().getRowKeyResolver());
+        }
+        return m_hiliteIndex;
+    }
+
     /** {@inheritDoc} */
     @Override    
     public void hiLite(final KeyEvent event) {
-        final Set<RowKey> hiliteKeys = m_hiliteHandler.getHiLitKeys();
-        for (NumericBin bin : m_panel.getBins()) {
-            // only hilite bin if all contained pattern are hilit
-            if (hiliteKeys.containsAll(bin.getRowKeys())) {
-                bin.setHilited(true);
-            }
+        // only the keys of the event are looked at
+        if (m_canHilite) {
+            // and repaint the changed bins to display them correctly
+            m_panel.hiliteChanged(getHiliteIndex().hilite(event.keys()));
         }
-        // and repaint to have the hilited bins displayed correctly
-        m_panel.repaint();
     }
 
     /** {@inheritDoc} */
     @Override
     public void unHiLite(final KeyEvent event) {
-        final Set<RowKey> hiliteKeys = m_hiliteHandler.getHiLitKeys();
-        for (NumericBin bin : m_panel.getBins()) {
-            final Set<RowKey> copyKeys = new LinkedHashSet<RowKey>(
-                    bin.getRowKeys());
-            // unhilite bin if at least one contained pattern is not hilit
-            if (copyKeys.retainAll(hiliteKeys)) {
-                bin.setHilited(false);
-            }
+        if (m_canHilite) {
+            // and repaint the changed bins to display them correctly
+            m_panel.hiliteChanged(getHiliteIndex().unhilite(event.keys()));
         }
-        // and repaint to have the hilited bins displayed correctly
-        m_panel.repaint();
     }
 
     /** {@inheritDoc} */
     @Override
     public void unHiLiteAll(final KeyEvent event) {
-        for (NumericBin bin : m_panel.getBins()) {
-             bin.setHilited(false);
+        if (m_hiliteIndex != null) {
+            m_hiliteIndex.clear();
+        } else {
+            for (NumericBin bin : m_panel.getBins()) {
+                bin.setHiliteCount(0);
+            }
         }
         // repaint to display the bins correctly
-        m_panel.repaint();
+        m_panel.hiliteCleared();
     }
 
 }
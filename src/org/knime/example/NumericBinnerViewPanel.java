@@ -25,105 +25,712 @@ import java.awt.Dimension;
 import java.awt.Graphics;
 import java.awt.Graphics2D;
 import java.awt.Rectangle;
+import java.awt.event.MouseEvent;
+import java.awt.event.MouseWheelEvent;
+import java.awt.event.MouseWheelListener;
+import java.awt.image.BufferedImage;
+import java.util.BitSet;
+import java.util.concurrent.ExecutionException;
 
 import javax.swing.JPanel;
+import javax.swing.SwingWorker;
 
 import org.knime.core.data.property.ColorAttr;
+import org.knime.core.node.NodeLogger;
 
 /**
- * Draws the bins in the paint method.
+ * Draws the bins. The bars are rendered into an image on a background 
+ * thread, which is only repeated if the bins, the visible range or the 
+ * size of the panel change; painting just copies the image. Selection and 
+ * hilite are drawn on top of the image, only for the selected and hilited 
+ * bins. Bins are hit by arithmetic on the viewport, the selection is a set of
+ * bin indices.
+ * <p>
+ * The mouse wheel zooms into a range of bins, with shift pressed it pans.
+ * If more bins are visible than the panel is wide, the bins falling into 
+ * one pixel column are aggregated by a {@link BinCountPyramid}: the column 
+ * shows the largest bin, the part above the smallest bin in a lighter 
+ * color. Each column is computed from O(log n) aggregates, hence the 
+ * number of bins does not affect the painting.
  * 
  * @author KNIME.com AG, Zurich, Switzerland
  */
 public class NumericBinnerViewPanel extends JPanel {
     
+    private static final NodeLogger LOGGER = 
+        NodeLogger.getLogger(NumericBinnerViewPanel.class);
+    
+    // the color of a column between its smallest and largest bin
+    private static final Color RANGE_COLOR = Color.GRAY;
+    
+    // the factor of one mouse wheel step
+    private static final double ZOOM_FACTOR = 1.25;
+    
     // the bin representation
     private NumericBin[] m_bins;
     
+    // the intervals of the bins, may be null
+    private NumericBinModel m_model;
+    
+    // the sizes and the hilited rows of the bins
+    private BinCountPyramid m_sizes;
+    
+    private BinCountPyramid m_hiliteCounts;
+    
+    // the visible range of bins
+    private int m_first;
+    
+    private int m_count;
+    
     // initial size, if we have no size from the component
     private static final int SIZE = 600;
     
+    // the dragged selection rectangle, null if none
+    private Rectangle m_rubberBand;
+    
+    // the rendered bars, may be stale while it is rendered anew
+    private BufferedImage m_image;
+    
+    // renders the image for the current viewport, null if idle
+    private BarRenderer m_renderer;
+    
+    // incremented whenever the bins change, outdated renderings are dropped
+    private int m_generation;
+    
+    private final BitSet m_selectedBins = new BitSet();
+    
+    private final BitSet m_hilitedBins = new BitSet();
+    
     /**
      * Sets the bins and the initial size.
      * @param bins the bins to draw.
      */
     public NumericBinnerViewPanel(final NumericBin[] bins) {
-        m_bins = bins;
         setPreferredSize(new Dimension(SIZE, SIZE));
+        // enables the tool tips
+        setToolTipText("");
+        addMouseWheelListener(new MouseWheelListener() {
+            /** {@inheritDoc} */
+            @Override
+            public void mouseWheelMoved(final MouseWheelEvent e) {
+                if (e.isShiftDown()) {
+                    pan(e.getWheelRotation() * Math.max(1, m_count / 10));
+                } else {
+                    zoom(e.getX(), 
+                            Math.pow(ZOOM_FACTOR, -e.getWheelRotation()));
+                }
+            }
+        });
+        updateView(bins, null);
     }
     
     /**
-     * If the view is updated the new bins are set and then painted.
+     * If the view is updated the new bins are set and then painted, all 
+     * bins are visible.
      * 
      * @param bins the new bins to display.
+     * @param model the intervals of the bins, may be <code>null</code>
      */
-    public void updateView(final NumericBin[] bins) {
+    public void updateView(final NumericBin[] bins, 
+            final NumericBinModel model) {
         m_bins = bins;
+        m_model = model;
+        m_sizes = BinCountPyramid.createForSizes(bins);
+        long[] hiliteCounts = new long[bins.length];
+        m_selectedBins.clear();
+        m_hilitedBins.clear();
+        m_rubberBand = null;
+        for (int i = 0; i < bins.length; i++) {
+            hiliteCounts[i] = bins[i].getHiliteCount();
+            m_hilitedBins.set(i, hiliteCounts[i] > 0);
+        }
+        m_hiliteCounts = new BinCountPyramid(hiliteCounts);
+        // the image of the previous bins is useless
+        m_image = null;
+        setVisibleRange(0, bins.length);
+    }
+    
+    /**
+     * @return all bins.
+     */
+    public NumericBin[] getBins() {
+        return m_bins;
+    }
+    
+    /**
+     * Shows a range of bins, it is moved into the bins if necessary.
+     * 
+     * @param first the first visible bin
+     * @param count the number of visible bins
+     */
+    public void setVisibleRange(final int first, final int count) {
+        m_count = Math.max(1, Math.min(count, m_bins.length));
+        m_first = Math.max(0, Math.min(first, m_bins.length - m_count));
+        m_generation++;
+        if (m_renderer != null) {
+            m_renderer.cancel(true);
+            m_renderer = null;
+        }
         repaint();
     }
-
+    
+    /**
+     * @return the first visible bin
+     */
+    public int getFirstVisibleBin() {
+        return m_first;
+    }
+    
+    /**
+     * @return the number of visible bins
+     */
+    public int getVisibleBinCount() {
+        return m_count;
+    }
+    
+    /**
+     * Zooms in or out, the bin at the given position stays in place.
+     * 
+     * @param x the x coordinate to zoom around
+     * @param factor greater than 1 to zoom in, less than 1 to zoom out
+     */
+    public void zoom(final int x, final double factor) {
+        if (m_bins.length == 0) {
+            return;
+        }
+        double position = Math.max(0, Math.min(1, 
+                x / (double)getPaintWidth()));
+        double anchor = m_first + position * m_count;
+        int count = (int)Math.round(m_count / factor);
+        if (count == m_count) {
+            // make sure every step changes something
+            count += factor > 1 ? -1 : 1;
+        }
+        count = Math.max(1, Math.min(count, m_bins.length));
+        setVisibleRange((int)Math.round(anchor - position * count), count);
+    }
+    
+    /**
+     * Moves the visible range.
+     * 
+     * @param bins the number of bins to move, negative to move left
+     */
+    public void pan(final int bins) {
+        setVisibleRange(m_first + bins, m_count);
+    }
+    
+    /**
+     * @param x the x coordinate in the panel
+     * @return the index of the bin at the coordinate or -1 if there is none;
+     *  if several bins share the pixel column the first of them
+     */
+    public int getBinAt(final int x) {
+        if (m_bins.length == 0) {
+            return -1;
+        }
+        return createViewport().getBinAt(x);
+    }
+    
+    /**
+     * @param x the x coordinate in the panel
+     * @param y the y coordinate in the panel
+     * @return the index of the bin whose bar (or whose pixel column) 
+     *  contains the point or -1 if there is none
+     */
+    public int getBinAt(final int x, final int y) {
+        if (m_bins.length == 0) {
+            return -1;
+        }
+        Viewport viewport = createViewport();
+        int bin = viewport.getBinAt(x);
+        if (bin < 0) {
+            return -1;
+        }
+        int column = viewport.getColumn(bin);
+        int top = viewport.getTop(viewport.getMax(m_sizes, column));
+        return y >= top ? bin : -1;
+    }
+    
+    /**
+     * @param rect a rectangle in the panel
+     * @return the indices of the bins whose bar (or whose pixel column) 
+     *  intersects the rectangle
+     */
+    public BitSet getBinsIn(final Rectangle rect) {
+        BitSet bins = new BitSet();
+        if (m_bins.length == 0 || rect.width < 0) {
+            return bins;
+        }
+        Viewport viewport = createViewport();
+        int bottom = rect.y + rect.height;
+        int firstColumn = viewport.getColumnAt(rect.x);
+        int lastColumn = Math.min(viewport.getColumns() - 1, 
+                viewport.getColumnAt(rect.x + rect.width));
+        for (int column = firstColumn; column <= lastColumn; column++) {
+            int start = viewport.getFirstBin(column);
+            int end = viewport.getFirstBin(column + 1);
+            if (viewport.getTop(m_sizes.getMax(start, end)) >= bottom) {
+                // no bar of the column reaches the rectangle
+                continue;
+            }
+            if (viewport.getTop(m_sizes.getMin(start, end)) < bottom) {
+                // all bars of the column do
+                bins.set(start, end);
+                continue;
+            }
+            for (int i = start; i < end; i++) {
+                if (viewport.getTop(m_bins[i].getSize()) < bottom) {
+                    bins.set(i);
+                }
+            }
+        }
+        return bins;
+    }
+    
+    /**
+     * @return a copy of the indices of the selected bins
+     */
+    public BitSet getSelectedBins() {
+        return (BitSet)m_selectedBins.clone();
+    }
+    
+    /**
+     * Changes the selection of a bin and repaints it.
+     * @param bin the index of the bin
+     * @param selected true if the bin is selected
+     */
+    public void setSelected(final int bin, final boolean selected) {
+        m_selectedBins.set(bin, selected);
+        repaintBin(bin);
+    }
+    
+    /**
+     * Selects bins.
+     * @param bins the indices of the bins to select
+     * @param add true if the bins are added to the selection, false if 
+     *  they replace it
+     */
+    public void setSelected(final BitSet bins, final boolean add) {
+        if (!add) {
+            m_selectedBins.clear();
+        }
+        m_selectedBins.or(bins);
+        // the overlays are cheap, the bars are not painted anew
+        repaint();
+    }
+    
+    /**
+     * Deselects all bins.
+     */
+    public void clearSelection() {
+        if (!m_selectedBins.isEmpty()) {
+            m_selectedBins.clear();
+            repaint();
+        }
+    }
+    
+    /**
+     * Shows the rectangle being dragged to select bins.
+     * @param rubberBand the rectangle, <code>null</code> to remove it
+     */
+    public void setRubberBand(final Rectangle rubberBand) {
+        m_rubberBand = rubberBand;
+        repaint();
+    }
+    
+    /**
+     * Repaints the bins whose number of hilited rows changed.
+     * @param bins the indices of the changed bins
+     */
+    public void hiliteChanged(final BitSet bins) {
+        for (int i = bins.nextSetBit(0); i >= 0; i = bins.nextSetBit(i + 1)) {
+            int hiliteCount = m_bins[i].getHiliteCount();
+            m_hiliteCounts.set(i, hiliteCount);
+            m_hilitedBins.set(i, hiliteCount > 0);
+            repaintBin(i);
+        }
+    }
+    
+    /**
+     * Repaints all bins after their hilite counts were reset.
+     */
+    public void hiliteCleared() {
+        m_hilitedBins.clear();
+        m_hiliteCounts = new BinCountPyramid(new long[m_bins.length]);
+        repaint();
+    }
+    
+    private void repaintBin(final int bin) {
+        if (bin < m_first || bin >= m_first + m_count) {
+            return;
+        }
+        Viewport viewport = createViewport();
+        int x = viewport.getX(viewport.getColumn(bin));
+        // including the borders
+        repaint(x - 2, 0, viewport.getColumnWidth() + 4, 
+                viewport.m_height);
+    }
+    
     /** {@inheritDoc} */
     @Override
+    public String getToolTipText(final MouseEvent event) {
+        int i = getBinAt(event.getX());
+        if (i < 0) {
+            return null;
+        }
+        Viewport viewport = createViewport();
+        int column = viewport.getColumn(i);
+        int first = viewport.getFirstBin(column);
+        int last = viewport.getFirstBin(column + 1) - 1;
+        String text;
+        if (first == last) {
+            text = "Bin " + i + ": " + m_bins[i].getSize() + " rows";
+        } else {
+            text = "Bins " + first + " - " + last + ": " 
+                + m_sizes.getSum(first, last + 1) + " rows";
+        }
+        if (m_model != null && last < m_model.getNumberOfBins()) {
+            text += " in " 
+                + (m_model.containsLowerBound(first) ? "[" : "(")
+                + m_model.getLowerBoundForInterval(first) + ", " 
+                + m_model.getUpperBoundForInterval(last)
+                + (m_model.containsUpperBound(last) ? "]" : ")");
+        }
+        long hiliteCount = m_hiliteCounts.getSum(first, last + 1);
+        if (hiliteCount > 0) {
+            text += ", " + hiliteCount + " hilited";
+        }
+        return text;
+    }
+    
+    // if no size information available (creation) use the default size
+    private int getPaintWidth() {
+        int width = getWidth();
+        return width == 0 ? SIZE : width;
+    }
+    
+    private int getPaintHeight() {
+        int height = getHeight();
+        return height == 0 ? SIZE : height;
+    }
+    
+    private Viewport createViewport() {
+        return new Viewport(m_first, m_count, getPaintWidth(), 
+                getPaintHeight(), m_sizes.getMax(m_first, m_first + m_count));
+    }
+
+    /** 
+     * Copies the rendered bars and draws the selected and hilited bins on
+     * top. If the viewport changed the image is rendered anew, meanwhile 
+     * the stale image is scaled.
+     * {@inheritDoc} 
+     */
+    @Override
     public void paint(final Graphics g) {
         super.paint(g);
-        if (m_bins != null && m_bins.length > 0) {
-            int maxNr = 0;
-            // determine the largest bin
-            for (int i = 0; i < m_bins.length; i++) {
-                maxNr = Math.max(m_bins[i].getSize(), maxNr);
-            }
-            // if no size information available (creation) set default size
-            int width = getWidth();
-            if (width == 0) {
-                width = SIZE;
-            }
-            int height = getHeight();
-            if (height == 0) {
-                height = SIZE;
-            }
-            // calculate the bin width
-            int binWidth = width / m_bins.length;
-            for (int i = 0; i < m_bins.length; i++) {
-                // the left side of the rectangle
-                int x = i * binWidth;
-                // the height of the bin
-                int binHeight = height;
-                // the larger the bin the higher the rect
-                double sizeFactor = ((double)(maxNr - m_bins[i].getSize())
-                        / (double)maxNr); 
-                // since y-axis starts on top subtract 
-                binHeight -= sizeFactor * height;
-                Rectangle rect = new Rectangle(x, height - binHeight, binWidth, 
-                        binHeight);
-                m_bins[i].setViewRepresentation(rect);
-                // draw a border in white to make the bins distinguishable
-                Color color = Color.BLACK;
-                if (m_bins[i].isHilited()) {
-                    color = ColorAttr.HILITE;
-                }
-                if (m_bins[i].isSelected()) {
-                    color = ColorAttr.SELECTED;
-                }
-                if (m_bins[i].isHilited() && m_bins[i].isSelected()) {
-                    color = ColorAttr.SELECTED_HILITE;
+        if (m_bins == null || m_bins.length == 0) {
+            return;
+        }
+        Viewport viewport = createViewport();
+        BufferedImage image = m_image;
+        if (image == null || m_renderer == null 
+                && !viewport.equals(m_imageViewport)) {
+            render(viewport);
+        }
+        if (image == null) {
+            return;
+        }
+        g.drawImage(image, 0, 0, viewport.m_width, viewport.m_height, null);
+        int firstColumn = 0;
+        int lastColumn = viewport.getColumns() - 1;
+        Rectangle clip = g.getClipBounds();
+        if (clip != null) {
+            firstColumn = Math.max(firstColumn, 
+                    viewport.getColumnAt(clip.x));
+            lastColumn = Math.min(lastColumn, 
+                    viewport.getColumnAt(clip.x + clip.width));
+        }
+        int from = viewport.getFirstBin(firstColumn);
+        int to = viewport.getFirstBin(lastColumn + 1);
+        if (viewport.isAggregated()) {
+            for (int column = firstColumn; column <= lastColumn; column++) {
+                int start = viewport.getFirstBin(column);
+                int end = viewport.getFirstBin(column + 1);
+                int nextSelected = m_selectedBins.nextSetBit(start);
+                paintOverlay(g, viewport, column, 
+                        nextSelected >= 0 && nextSelected < end, 
+                        m_hiliteCounts.getSum(start, end), 
+                        m_sizes.getSum(start, end));
+            }
+        } else {
+            // selected bins are filled in the selection color
+            for (int i = m_selectedBins.nextSetBit(from); i >= 0 && i < to; 
+                    i = m_selectedBins.nextSetBit(i + 1)) {
+                paintOverlay(g, viewport, viewport.getColumn(i), true, 
+                        m_bins[i].getHiliteCount(), m_bins[i].getSize());
+            }
+            for (int i = m_hilitedBins.nextSetBit(from); i >= 0 && i < to; 
+                    i = m_hilitedBins.nextSetBit(i + 1)) {
+                if (!m_selectedBins.get(i)) {
+                    paintOverlay(g, viewport, viewport.getColumn(i), false, 
+                            m_bins[i].getHiliteCount(), m_bins[i].getSize());
                 }
-                Graphics2D g2 = (Graphics2D)g;
-                g2.setColor(color);
-                g2.fillRect(rect.x + 2, rect.y + 2, 
-                        rect.width - 2, rect.height - 2);
-                g2.setColor(Color.WHITE);
-                g2.setStroke(new BasicStroke(2));
-                g2.drawRect(rect.x, rect.y, rect.width, rect.height);
             }
         }
+        Rectangle rubberBand = m_rubberBand;
+        if (rubberBand != null) {
+            g.setColor(ColorAttr.SELECTED);
+            g.drawRect(rubberBand.x, rubberBand.y, 
+                    rubberBand.width, rubberBand.height);
+        }
+    }
+    
+    // the share of hilited rows is drawn at the bottom of the column
+    private void paintOverlay(final Graphics g, final Viewport viewport, 
+            final int column, final boolean selected, final long hiliteCount, 
+            final long size) {
+        if (!selected && hiliteCount <= 0) {
+            return;
+        }
+        Rectangle rect = viewport.getBar(column, 
+                viewport.getMax(m_sizes, column));
+        if (selected) {
+            g.setColor(ColorAttr.SELECTED);
+            g.fillRect(rect.x, rect.y, rect.width, rect.height);
+        }
+        if (hiliteCount > 0 && size > 0) {
+            int hiliteHeight = (int)Math.round(
+                    rect.height * (hiliteCount / (double)size));
+            g.setColor(selected 
+                    ? ColorAttr.SELECTED_HILITE : ColorAttr.HILITE);
+            g.fillRect(rect.x, rect.y + rect.height - hiliteHeight,
+                    rect.width, hiliteHeight);
+        }
+    }
+    
+    // the viewport the current image was rendered for
+    private Viewport m_imageViewport;
+    
+    // starts rendering the image unless it is already rendered 
+    private void render(final Viewport viewport) {
+        if (m_renderer != null) {
+            if (m_renderer.m_viewport.equals(viewport)) {
+                return;
+            }
+            m_renderer.cancel(true);
+        }
+        m_renderer = new BarRenderer(viewport);
+        m_renderer.execute();
     }
     
+    /**
+     * Maps the visible bins to pixel columns. If the bins are at least one 
+     * pixel wide each bin is a column, otherwise several bins share a 
+     * column of one pixel.
+     */
+    private static final class Viewport {
+        
+        private final int m_first;
+        
+        private final int m_count;
+        
+        private final int m_width;
+        
+        private final int m_height;
+        
+        // the largest bin in the visible range
+        private final long m_maxSize;
+        
+        // the width of a bin, 0 if several bins share a pixel column
+        private final int m_binWidth;
+        
+        Viewport(final int first, final int count, final int width, 
+                final int height, final long maxSize) {
+            m_first = first;
+            m_count = count;
+            m_width = width;
+            m_height = height;
+            m_maxSize = maxSize;
+            m_binWidth = count <= width ? width / count : 0;
+        }
+        
+        boolean isAggregated() {
+            return m_binWidth == 0;
+        }
+        
+        int getColumns() {
+            return isAggregated() ? m_width : m_count;
+        }
+        
+        int getColumnWidth() {
+            return isAggregated() ? 1 : m_binWidth;
+        }
+        
+        int getX(final int column) {
+            return column * getColumnWidth();
+        }
+        
+        // the column at the x coordinate, may be outside of the columns
+        int getColumnAt(final int x) {
+            return Math.max(0, x) / getColumnWidth();
+        }
+        
+        // the first bin of the column, for the column behind the last one
+        // the end of the visible range
+        int getFirstBin(final int column) {
+            if (!isAggregated()) {
+                return m_first + column;
+            }
+            return m_first + (int)((long)column * m_count / m_width);
+        }
+        
+        int getBinAt(final int x) {
+            int column = getColumnAt(x);
+            if (x < 0 || column >= getColumns()) {
+                return -1;
+            }
+            return getFirstBin(column);
+        }
+        
+        // the column containing the visible bin
+        int getColumn(final int bin) {
+            if (!isAggregated()) {
+                return bin - m_first;
+            }
+            // the last column whose first bin is not behind the bin
+            return (int)(((long)(bin - m_first + 1) * m_width + m_count - 1) 
+                    / m_count) - 1;
+        }
+        
+        long getMax(final BinCountPyramid sizes, final int column) {
+            return sizes.getMax(getFirstBin(column), 
+                    getFirstBin(column + 1));
+        }
+        
+        // the top of a bar of the given size
+        int getTop(final long size) {
+            // the larger the bin the higher the bar
+            double sizeFactor = (double)(m_maxSize - size) / m_maxSize;
+            return m_height - (int)(m_height - sizeFactor * m_height);
+        }
+        
+        // the inner part of the bar of the column, without border
+        Rectangle getBar(final int column, final long size) {
+            int top = getTop(size);
+            if (isAggregated()) {
+                return new Rectangle(column, top, 1, m_height - top);
+            }
+            // bars up to three pixels wide have no border, they are 
+            // drawn over the whole width of the bin
+            int border = hasBorders() ? 2 : 0;
+            return new Rectangle(getX(column) + border, top + border, 
+                    m_binWidth - border, m_height - top - border);
+        }
+        
+        boolean hasBorders() {
+            return getColumnWidth() > 3;
+        }
+        
+        /** {@inheritDoc} */
+        @Override
+        public boolean equals(final Object obj) {
+            if (!(obj instanceof Viewport)) {
+                return false;
+            }
+            Viewport other = (Viewport)obj;
+            return m_first == other.m_first && m_count == other.m_count
+                && m_width == other.m_width && m_height == other.m_height
+                && m_maxSize == other.m_maxSize;
+        }
+        
+        /** {@inheritDoc} */
+        @Override
+        public int hashCode() {
+            return ((m_first * 31 + m_count) * 31 + m_width) * 31 + m_height;
+        }
+    }
     
     /**
-     * 
-     * @return all bins.
+     * Renders the bars of the visible bins into an image.
      */
-    public NumericBin[] getBins() {
-        return m_bins;
+    private final class BarRenderer extends SwingWorker<BufferedImage, Void> {
+        
+        private final Viewport m_viewport;
+        
+        private final BinCountPyramid m_renderedSizes = m_sizes;
+        
+        private final int m_renderedGeneration = m_generation;
+        
+        BarRenderer(final Viewport viewport) {
+            m_viewport = viewport;
+        }
+        
+        /** {@inheritDoc} */
+        @Override
+        protected BufferedImage doInBackground() {
+            Viewport viewport = m_viewport;
+            BufferedImage image = new BufferedImage(viewport.m_width, 
+                    viewport.m_height, BufferedImage.TYPE_INT_ARGB);
+            Graphics2D g2 = image.createGraphics();
+            try {
+                g2.setStroke(new BasicStroke(2));
+                // borders only if they leave something of the bars
+                boolean borders = viewport.hasBorders();
+                for (int column = 0; column < viewport.getColumns(); 
+                        column++) {
+                    if (column % 1024 == 0 && isCancelled()) {
+                        return null;
+                    }
+                    long max = viewport.getMax(m_renderedSizes, column);
+                    Rectangle bar = viewport.getBar(column, max);
+                    if (viewport.isAggregated()) {
+                        long min = m_renderedSizes.getMin(
+                                viewport.getFirstBin(column), 
+                                viewport.getFirstBin(column + 1));
+                        int minTop = viewport.getTop(min);
+                        g2.setColor(RANGE_COLOR);
+                        g2.drawLine(column, bar.y, column, minTop);
+                        g2.setColor(Color.BLACK);
+                        g2.drawLine(column, minTop, column, 
+                                viewport.m_height);
+                        continue;
+                    }
+                    g2.setColor(Color.BLACK);
+                    g2.fillRect(bar.x, bar.y, bar.width, bar.height);
+                    if (borders) {
+                        // draw a border in white to make the bins 
+                        // distinguishable
+                        Rectangle rect = new Rectangle(viewport.getX(column),
+                                bar.y - 2, viewport.m_binWidth, 
+                                bar.height + 2);
+                        g2.setColor(Color.WHITE);
+                        g2.drawRect(rect.x, rect.y, rect.width, rect.height);
+                    }
+                }
+            } finally {
+                g2.dispose();
+            }
+            return image;
+        }
+        
+        /** {@inheritDoc} */
+        @Override
+        protected void done() {
+            if (isCancelled() || m_renderedGeneration != m_generation) {
+                return;
+            }
+            m_renderer = null;
+            try {
+                m_image = get();
+                m_imageViewport = m_viewport;
+            } catch (InterruptedException e) {
+                return;
+            } catch (ExecutionException e) {
+                LOGGER.error("Could not render the histogram: " 
+                        + e.getCause().getMessage(), e.getCause());
+                return;
+            }
+            repaint();
+        }
     }
 }
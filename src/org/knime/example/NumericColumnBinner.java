@@ -0,0 +1,322 @@
+/*
+ * ------------------------------------------------------------------------
+  * This source code, its documentation and all appendant files
+ * are protected by copyright law. All rights reserved.
+ *
+ * Copyright, 2008 - 2012
+ * KNIME.com, Zurich, Switzerland
+ *
+ * You may not modify, publish, transmit, transfer or sell, reproduce,
+ * create derivative works from, distribute, perform, display, or in
+ * any way exploit any of the content, in whole or in part, except as
+ * otherwise expressly permitted in writing by the copyright owner or
+ * as specified in the license file distributed with this product.
+ *
+ * If you have any questions please contact the copyright holder:
+ * website: www.knime.com
+ * email: contact@knime.com
+ * ---------------------------------------------------------------------
+ */
+package org.knime.example;
+
+import java.util.Arrays;
+
+import org.knime.core.data.DataCell;
+import org.knime.core.data.DataRow;
+import org.knime.core.data.DataType;
+import org.knime.core.data.DoubleValue;
+import org.knime.core.data.IntValue;
+import org.knime.core.data.LongValue;
+import org.knime.core.data.def.IntCell;
+
+/**
+ * Bins the values of one column: determines the bin number of each value 
+ * and counts the rows per bin or collects them in the bins. Optionally the
+ * sum, minimum and maximum of the values of each bin are accumulated in the
+ * same pass. The cells with the bin numbers are created once per bin, 
+ * binning a row allocates nothing unless the bins collect their rows.
+ * 
+ * @author KNIME.com AG, Zurich, Switzerland
+ */
+public class NumericColumnBinner {
+
+    private final NumericBinLookup m_lookup;
+    
+    // bins the values of integer columns exactly
+    private final IntegerBinLookup m_integerLookup;
+    
+    private final int m_colIndex;
+    
+    // null if only the number of rows per bin is needed
+    private final NumericBin[] m_bins;
+    
+    // null for chunk binners, their rows are counted by merge()
+    private final long[] m_counts;
+    
+    // the accumulated values per bin, null if they are not needed
+    private final double[] m_sums;
+    
+    private final double[] m_mins;
+    
+    private final double[] m_maxs;
+    
+    // the value of each row of a chunk binner accumulating statistics, the
+    // sums are added in the order of the rows when the chunk is merged
+    private final double[] m_rowValues;
+    
+    private final int m_firstOrdinal;
+    
+    // the cell of each bin, cells are immutable and hence shared by all 
+    // rows of a bin
+    private final DataCell[] m_cells;
+    
+    /**
+     * @param model the model defining the intervals of the bins
+     * @param columnIndex the index of the column to bin
+     * @param bins the representation of the bins collecting their rows or 
+     *  <code>null</code> if only the number of rows per bin is needed.
+     */
+    public NumericColumnBinner(final NumericBinModel model, 
+            final int columnIndex, final NumericBin[] bins) {
+        this(model, columnIndex, bins, false);
+    }
+    
+    /**
+     * @param model the model defining the intervals of the bins
+     * @param columnIndex the index of the column to bin
+     * @param bins the representation of the bins collecting their rows or 
+     *  <code>null</code> if only the number of rows per bin is needed.
+     * @param valueStatistics true if the sum, minimum and maximum of the 
+     *  values of each bin are accumulated
+     */
+    public NumericColumnBinner(final NumericBinModel model, 
+            final int columnIndex, final NumericBin[] bins, 
+            final boolean valueStatistics) {
+        this(getLookup(model), model.getIntegerLookup(), columnIndex, bins, 
+                valueStatistics, createCells(model.getNumberOfBins()), 
+                false, null, 0);
+    }
+    
+    private NumericColumnBinner(final NumericBinLookup lookup, 
+            final IntegerBinLookup integerLookup, final int columnIndex, 
+            final NumericBin[] bins, final boolean valueStatistics, 
+            final DataCell[] cells, final boolean chunk, 
+            final double[] rowValues, final int firstOrdinal) {
+        m_rowValues = rowValues;
+        m_firstOrdinal = firstOrdinal;
+        m_lookup = lookup;
+        m_integerLookup = integerLookup;
+        m_colIndex = columnIndex;
+        m_bins = bins;
+        m_cells = cells;
+        int nrOfBins = lookup.getNumberOfBins();
+        m_counts = chunk ? null : new long[nrOfBins];
+        if (valueStatistics) {
+            m_sums = new double[nrOfBins];
+            m_mins = new double[nrOfBins];
+            m_maxs = new double[nrOfBins];
+            Arrays.fill(m_mins, Double.POSITIVE_INFINITY);
+            Arrays.fill(m_maxs, Double.NEGATIVE_INFINITY);
+        } else {
+            m_sums = null;
+            m_mins = null;
+            m_maxs = null;
+        }
+    }
+    
+    private static NumericBinLookup getLookup(final NumericBinModel model) {
+        if (model == null) {
+            throw new NullPointerException("Bin model must not be null!");
+        }
+        return model.getLookup();
+    }
+    
+    private static DataCell[] createCells(final int nrOfBins) {
+        DataCell[] cells = new DataCell[nrOfBins];
+        for (int i = 0; i < nrOfBins; i++) {
+            cells[i] = new IntCell(i);
+        }
+        return cells;
+    }
+    
+    /**
+     * @param row the row to bin
+     * @param rowOrdinal the position of the row in the table
+     * @return the number of the bin or a missing cell if the value is 
+     *  missing or outside of the bins
+     */
+    public DataCell getCell(final DataRow row, final int rowOrdinal) {
+        return getBinCell(bin(row, rowOrdinal));
+    }
+    
+    /**
+     * @param binNr the number of a bin or {@link NumericBinLookup#NO_BIN}
+     * @return the shared cell with the number of the bin, a missing cell 
+     *  for {@link NumericBinLookup#NO_BIN}
+     */
+    public DataCell getBinCell(final int binNr) {
+        if (binNr == NumericBinLookup.NO_BIN) {
+            return DataType.getMissingCell();
+        }
+        return m_cells[binNr];
+    }
+    
+    /**
+     * Adds the row to its bin.
+     * 
+     * @param row the row to bin
+     * @param rowOrdinal the position of the row in the table
+     * @return the number of the bin or {@link NumericBinLookup#NO_BIN} if 
+     *  the value is missing or outside of the bins
+     */
+    public int bin(final DataRow row, final int rowOrdinal) {
+        DataCell currCell = row.getCell(m_colIndex);
+        // check the cell for missing value
+        if (currCell.isMissing()) {
+            return NumericBinLookup.NO_BIN;
+        }
+        double currValue;
+        int binNr;
+        // integers are compared exactly, beyond 2^53 doubles are rounded
+        if (currCell instanceof IntValue) {
+            int intValue = ((IntValue)currCell).getIntValue();
+            currValue = intValue;
+            binNr = m_integerLookup.getBinIndex(intValue);
+        } else if (currCell instanceof LongValue) {
+            long longValue = ((LongValue)currCell).getLongValue();
+            currValue = longValue;
+            binNr = m_integerLookup.getBinIndex(longValue);
+        } else {
+            currValue = ((DoubleValue)currCell).getDoubleValue();
+            binNr = m_lookup.getBinIndex(currValue);
+        }
+        if (binNr == NumericBinLookup.NO_BIN) {
+            return NumericBinLookup.NO_BIN;
+        }
+        if (m_counts == null) {
+            // a chunk binner, the rest is done when the chunk is merged
+            if (m_rowValues != null) {
+                m_rowValues[rowOrdinal - m_firstOrdinal] = currValue;
+            }
+            return binNr;
+        }
+        m_counts[binNr]++;
+        if (m_sums != null) {
+            m_sums[binNr] += currValue;
+            m_mins[binNr] = Math.min(m_mins[binNr], currValue);
+            m_maxs[binNr] = Math.max(m_maxs[binNr], currValue);
+        }
+        if (m_bins != null) {
+            m_bins[binNr].addRowToBin(rowOrdinal);
+        }
+        return binNr;
+    }
+    
+    /**
+     * Creates an empty binner for a chunk of the rows, which can be filled 
+     * by another thread. It only keeps the value of each row if statistics 
+     * are accumulated, it has no counts; the rows and their values are 
+     * added to the bins by 
+     * {@link #merge(NumericColumnBinner, int[], int, int)}.
+     * 
+     * @param firstOrdinal the ordinal of the first row of the chunk
+     * @param size the number of rows of the chunk
+     * @return an empty binner with the same bins
+     */
+    public NumericColumnBinner createChunkBinner(final int firstOrdinal, 
+            final int size) {
+        return new NumericColumnBinner(m_lookup, m_integerLookup, m_colIndex,
+                null, false, m_cells, true, 
+                hasValueStatistics() ? new double[size] : null, firstOrdinal);
+    }
+    
+    /**
+     * Adds the rows of a chunk. Chunks have to be merged in the order of 
+     * their rows, which keeps the row ordinals of the bins ascending. The
+     * values are summed row by row, hence the sums are the same as if all
+     * rows were binned by this binner.
+     * 
+     * @param chunk the binner of the chunk created by 
+     *  {@link #createChunkBinner(int, int)}
+     * @param binNumbers the bin of each row of the chunk, 
+     *  {@link NumericBinLookup#NO_BIN} for rows without bin
+     * @param size the number of rows of the chunk
+     * @param firstOrdinal the ordinal of the first row of the chunk
+     */
+    public void merge(final NumericColumnBinner chunk, final int[] binNumbers,
+            final int size, final int firstOrdinal) {
+        // one pass over the rows, the work does not depend on the bins
+        for (int r = 0; r < size; r++) {
+            int binNr = binNumbers[r];
+            if (binNr == NumericBinLookup.NO_BIN) {
+                continue;
+            }
+            m_counts[binNr]++;
+            if (m_sums != null) {
+                double value = chunk.m_rowValues[r];
+                m_sums[binNr] += value;
+                m_mins[binNr] = Math.min(m_mins[binNr], value);
+                m_maxs[binNr] = Math.max(m_maxs[binNr], value);
+            }
+            if (m_bins != null) {
+                m_bins[binNr].addRowToBin(firstOrdinal + r);
+            }
+        }
+    }
+    
+    /**
+     * @return the number of rows per bin, <code>null</code> for a chunk 
+     *  binner
+     */
+    public long[] getCounts() {
+        return m_counts;
+    }
+    
+    /**
+     * @return true if the sum, minimum and maximum of the values of each bin
+     *  are accumulated
+     */
+    public boolean hasValueStatistics() {
+        return m_sums != null;
+    }
+    
+    /**
+     * @return the sum of the values per bin, <code>null</code> if 
+     *  {@link #hasValueStatistics()} is false
+     */
+    public double[] getSums() {
+        return m_sums;
+    }
+    
+    /**
+     * @return the smallest value per bin, positive infinity for empty bins;
+     *  <code>null</code> if {@link #hasValueStatistics()} is false
+     */
+    public double[] getMins() {
+        return m_mins;
+    }
+    
+    /**
+     * @return the largest value per bin, negative infinity for empty bins;
+     *  <code>null</code> if {@link #hasValueStatistics()} is false
+     */
+    public double[] getMaxs() {
+        return m_maxs;
+    }
+    
+    /**
+     * @return the filled bins, if no bins were given they only know the 
+     *  number of their rows.
+     */
+    public NumericBin[] getBins() {
+        if (m_bins != null) {
+            return m_bins;
+        }
+        NumericBin[] bins = new NumericBin[m_counts.length];
+        for (int i = 0; i < bins.length; i++) {
+            bins[i] = new NumericBin(m_counts[i]);
+        }
+        return bins;
+    }
+
+}
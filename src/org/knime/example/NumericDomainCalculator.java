@@ -0,0 +1,507 @@
+/*
+ * ------------------------------------------------------------------------
+  * This source code, its documentation and all appendant files
+ * are protected by copyright law. All rights reserved.
+ *
+ * Copyright, 2008 - 2012
+ * KNIME.com, Zurich, Switzerland
+ *
+ * You may not modify, publish, transmit, transfer or sell, reproduce,
+ * create derivative works from, distribute, perform, display, or in
+ * any way exploit any of the content, in whole or in part, except as
+ * otherwise expressly permitted in writing by the copyright owner or
+ * as specified in the license file distributed with this product.
+ *
+ * If you have any questions please contact the copyright holder:
+ * website: www.knime.com
+ * email: contact@knime.com
+ * ---------------------------------------------------------------------
+ */
+package org.knime.example;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.LinkedList;
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Future;
+
+import org.knime.core.data.DataCell;
+import org.knime.core.data.DataRow;
+import org.knime.core.data.DataTable;
+import org.knime.core.data.DoubleValue;
+import org.knime.core.data.IntValue;
+import org.knime.core.data.LongValue;
+import org.knime.core.data.RowIterator;
+import org.knime.core.data.container.CloseableRowIterator;
+import org.knime.core.node.BufferedDataTable;
+import org.knime.core.node.CanceledExecutionException;
+import org.knime.core.node.ExecutionMonitor;
+import org.knime.core.node.KNIMEConstants;
+import org.knime.core.util.ThreadPool;
+
+/**
+ * Determines the minimum and maximum of numeric columns if the column specs
+ * provide no domain and optionally a {@link QuantileSketch} of their values.
+ * All columns are determined in a single pass, minimum and maximum while the
+ * rows are read. For the sketches the rows are read in chunks; while the 
+ * next chunk is read the columns of the previous chunks are reduced in a
+ * sub pool of the KNIME thread pool. After each chunk the progress is 
+ * reported and cancellation is checked. Missing values, NaN and infinite 
+ * values are skipped.
+ * For integer columns the exact minimum and maximum are kept as well, the 
+ * double values are rounded beyond 2<sup>53</sup>.
+ * <p>
+ * Optionally only a stratified sample of the rows is evaluated: the table
+ * is divided into as many consecutive strata as rows are sampled and one 
+ * randomly chosen row of each stratum is used. The table has no random 
+ * access, hence all rows are still read from the table; only the values 
+ * of the other rows are not evaluated. The sample is the same for every 
+ * run, the bounds are estimates in this case.
+ * 
+ * @author KNIME.com AG, Zurich, Switzerland
+ */
+public class NumericDomainCalculator {
+    
+    /** Number of rows read into one chunk. */
+    static final int CHUNK_SIZE = 8192;
+    
+    private final int[] m_colIndices;
+    
+    private final int m_sketchSize;
+    
+    private final int m_nrThreads;
+    
+    private double[] m_min;
+    
+    private double[] m_max;
+    
+    // the exact bounds of the columns, valid if all values are integers
+    private long[] m_longMin;
+    
+    private long[] m_longMax;
+    
+    private boolean[] m_integer;
+    
+    private QuantileSketch[] m_sketches;
+    
+    private int m_sampleSize;
+    
+    private boolean m_sampled;
+    
+    /**
+     * @param colIndices the indices of the numeric columns
+     * @param sketchSize the size parameter of the quantile sketches or 0 if 
+     *  no sketches are needed
+     */
+    public NumericDomainCalculator(final int[] colIndices, 
+            final int sketchSize) {
+        this(colIndices, sketchSize, 
+                Runtime.getRuntime().availableProcessors());
+    }
+    
+    /**
+     * @param colIndices the indices of the numeric columns
+     * @param sketchSize the size parameter of the quantile sketches or 0 if 
+     *  no sketches are needed
+     * @param nrThreads the maximum number of threads building the sketches
+     */
+    public NumericDomainCalculator(final int[] colIndices, 
+            final int sketchSize, final int nrThreads) {
+        m_colIndices = colIndices.clone();
+        m_sketchSize = sketchSize;
+        m_nrThreads = Math.max(1, nrThreads);
+    }
+    
+    /**
+     * @param sampleSize the number of rows to evaluate, 0 to evaluate all
+     *  rows
+     */
+    public void setSampleSize(final int sampleSize) {
+        m_sampleSize = sampleSize;
+    }
+    
+    /**
+     * @return true if the last calculation only evaluated a sample of the
+     *  rows, i.e. the bounds are estimates
+     */
+    public boolean isSampled() {
+        return m_sampled;
+    }
+    
+    /**
+     * Scans the table.
+     * 
+     * @param table the table to scan
+     * @param exec to report progress and check for cancellation
+     * @throws CanceledExecutionException if the execution was canceled
+     */
+    public void calculate(final BufferedDataTable table, 
+            final ExecutionMonitor exec) throws CanceledExecutionException {
+        calculate(table, table.getRowCount(), exec);
+    }
+    
+    /**
+     * Scans any data table, e.g. one which is not created by the framework.
+     * 
+     * @param table the table to scan, its iterator is closed afterwards if
+     *  it is closeable
+     * @param rowCount the number of rows of the table, only used for the 
+     *  progress
+     * @param exec to report progress and check for cancellation
+     * @throws CanceledExecutionException if the execution was canceled
+     */
+    public void calculate(final DataTable table, final long rowCount,
+            final ExecutionMonitor exec) throws CanceledExecutionException {
+        final int nrColumns = m_colIndices.length;
+        // at most two chunks per thread in flight to bound the memory
+        final int maxPending = 2 * m_nrThreads;
+        // minimum and maximum are cheaper inline, only the sketches are
+        // built in chunks
+        ThreadPool pool = m_sketchSize > 0 ? createPool(m_nrThreads) : null;
+        // the reductions of the columns of each chunk
+        LinkedList<List<Future<ChunkReduction>>> pending = 
+            new LinkedList<List<Future<ChunkReduction>>>();
+        // the value arrays of merged chunks, they are filled again
+        LinkedList<double[]> free = new LinkedList<double[]>();
+        m_min = new double[nrColumns];
+        m_max = new double[nrColumns];
+        m_sketches = new QuantileSketch[nrColumns];
+        Arrays.fill(m_min, Double.POSITIVE_INFINITY);
+        Arrays.fill(m_max, Double.NEGATIVE_INFINITY);
+        m_longMin = new long[nrColumns];
+        m_longMax = new long[nrColumns];
+        m_integer = new boolean[nrColumns];
+        Arrays.fill(m_longMin, Long.MAX_VALUE);
+        Arrays.fill(m_longMax, Long.MIN_VALUE);
+        Arrays.fill(m_integer, true);
+        if (m_sketchSize > 0) {
+            for (int c = 0; c < nrColumns; c++) {
+                m_sketches[c] = new QuantileSketch(m_sketchSize);
+            }
+        }
+        m_sampled = m_sampleSize > 0 && rowCount > m_sampleSize;
+        StratifiedSample sample = 
+            m_sampled ? new StratifiedSample(rowCount, m_sampleSize) : null;
+        RowIterator it = table.iterator();
+        try {
+            long rowNr = 0;
+            double[][] chunk = pool == null ? null : new double[nrColumns][];
+            int[] chunkSizes = new int[nrColumns];
+            fill(chunk, free);
+            while (it.hasNext()) {
+                DataRow row = it.next();
+                rowNr++;
+                // the cells of rows outside of the sample are not read
+                boolean evaluated = sample == null || sample.next();
+                for (int c = 0; evaluated && c < nrColumns; c++) {
+                    DataCell cell = row.getCell(m_colIndices[c]);
+                    if (cell.isMissing()) {
+                        continue;
+                    }
+                    double value;
+                    if (cell instanceof IntValue) {
+                        int intValue = ((IntValue)cell).getIntValue();
+                        addInteger(c, intValue);
+                        value = intValue;
+                    } else if (cell instanceof LongValue) {
+                        long longValue = ((LongValue)cell).getLongValue();
+                        addInteger(c, longValue);
+                        value = longValue;
+                    } else {
+                        m_integer[c] = false;
+                        value = ((DoubleValue)cell).getDoubleValue();
+                        if (Double.isNaN(value) || Double.isInfinite(value)) {
+                            continue;
+                        }
+                    }
+                    if (value < m_min[c]) {
+                        m_min[c] = value;
+                    }
+                    if (value > m_max[c]) {
+                        m_max[c] = value;
+                    }
+                    if (chunk != null) {
+                        chunk[c][chunkSizes[c]++] = value;
+                    }
+                }
+                if (rowNr % CHUNK_SIZE == 0) {
+                    exec.checkCanceled();
+                    exec.setProgress(rowNr / (double)rowCount, 
+                            "Calculating domain, row " + rowNr);
+                    if (pool != null) {
+                        pending.add(submit(pool, chunk, chunkSizes, free));
+                        fill(chunk, free);
+                        Arrays.fill(chunkSizes, 0);
+                        while (pending.size() >= maxPending) {
+                            merge(pool, pending.removeFirst(), free);
+                        }
+                    }
+                }
+            }
+            if (pool != null) {
+                pending.add(submit(pool, chunk, chunkSizes, free));
+                while (!pending.isEmpty()) {
+                    merge(pool, pending.removeFirst(), free);
+                }
+            }
+        } finally {
+            if (it instanceof CloseableRowIterator) {
+                ((CloseableRowIterator)it).close();
+            }
+            for (List<Future<ChunkReduction>> reductions : pending) {
+                for (Future<ChunkReduction> reduction : reductions) {
+                    reduction.cancel(true);
+                }
+            }
+            if (pool != null) {
+                pool.shutdown();
+            }
+        }
+    }
+    
+    /**
+     * Creates the pool for the worker tasks of a node. It is a sub pool of
+     * the pool executing the node, hence the thread limit of the user is
+     * respected.
+     * 
+     * @param nrThreads the maximum number of threads of the pool
+     * @return a new pool
+     */
+    static ThreadPool createPool(final int nrThreads) {
+        ThreadPool parent = ThreadPool.currentPool();
+        if (parent == null) {
+            parent = KNIMEConstants.GLOBAL_THREAD_POOL;
+        }
+        return parent.createSubPool(nrThreads);
+    }
+    
+    /**
+     * Waits for a task of the pool. The waiting thread does not count 
+     * against the threads of the pool meanwhile, otherwise a node thread 
+     * waiting for its own tasks could starve them.
+     * 
+     * @param <T> the result type of the task
+     * @param pool the pool executing the task
+     * @param task the submitted task
+     * @return the result of the task
+     * @throws CanceledExecutionException if the waiting thread is 
+     *  interrupted
+     */
+    static <T> T await(final ThreadPool pool, final Future<T> task) 
+        throws CanceledExecutionException {
+        try {
+            return pool.runInvisible(new Callable<T>() {
+                /** {@inheritDoc} */
+                @Override
+                public T call() throws Exception {
+                    return task.get();
+                }
+            });
+        } catch (InterruptedException e) {
+            throw new CanceledExecutionException(e.getMessage());
+        } catch (ExecutionException e) {
+            Throwable cause = e.getCause();
+            // the failure of the task is wrapped by both get() calls
+            if (cause instanceof ExecutionException) {
+                cause = cause.getCause();
+            }
+            if (cause instanceof InterruptedException) {
+                throw new CanceledExecutionException(cause.getMessage());
+            }
+            throw new RuntimeException(cause);
+        }
+    }
+    
+    // takes the value arrays of the next chunk from the merged chunks
+    private static void fill(final double[][] chunk, 
+            final LinkedList<double[]> free) {
+        if (chunk == null) {
+            return;
+        }
+        for (int c = 0; c < chunk.length; c++) {
+            chunk[c] = free.isEmpty() 
+                ? new double[CHUNK_SIZE] : free.removeFirst();
+        }
+    }
+    
+    private void addInteger(final int column, final long value) {
+        if (value < m_longMin[column]) {
+            m_longMin[column] = value;
+        }
+        if (value > m_longMax[column]) {
+            m_longMax[column] = value;
+        }
+    }
+    
+    /**
+     * @param column the position of the column in the indices passed to 
+     *  the constructor
+     * @return true if the column contains at least one valid value
+     */
+    public boolean hasValues(final int column) {
+        return m_min[column] <= m_max[column];
+    }
+    
+    /**
+     * @param column the position of the column in the indices passed to 
+     *  the constructor
+     * @return the smallest value of the column
+     */
+    public double getMin(final int column) {
+        return m_min[column];
+    }
+    
+    /**
+     * @param column the position of the column in the indices passed to 
+     *  the constructor
+     * @return the largest value of the column
+     */
+    public double getMax(final int column) {
+        return m_max[column];
+    }
+    
+    /**
+     * @param column the position of the column in the indices passed to 
+     *  the constructor
+     * @return true if all values of the column are integers, i.e. 
+     *  {@link #getLongMin(int)} and {@link #getLongMax(int)} are exact
+     */
+    public boolean isInteger(final int column) {
+        return m_integer[column];
+    }
+    
+    /**
+     * @param column the position of the column in the indices passed to 
+     *  the constructor
+     * @return the smallest value of an integer column
+     */
+    public long getLongMin(final int column) {
+        return m_longMin[column];
+    }
+    
+    /**
+     * @param column the position of the column in the indices passed to 
+     *  the constructor
+     * @return the largest value of an integer column
+     */
+    public long getLongMax(final int column) {
+        return m_longMax[column];
+    }
+    
+    /**
+     * @param column the position of the column in the indices passed to 
+     *  the constructor
+     * @return the sketch of all values of the column or <code>null</code> if
+     *  no sketch was requested
+     */
+    public QuantileSketch getSketch(final int column) {
+        return m_sketches[column];
+    }
+    
+    // one task per column, they are reduced in parallel
+    private List<Future<ChunkReduction>> submit(final ThreadPool pool, 
+            final double[][] chunk, final int[] chunkSizes, 
+            final LinkedList<double[]> free) {
+        List<Future<ChunkReduction>> reductions = 
+            new ArrayList<Future<ChunkReduction>>(chunk.length);
+        for (int c = 0; c < chunk.length; c++) {
+            if (chunkSizes[c] > 0) {
+                reductions.add(pool.enqueue(
+                        new ChunkReduction(c, chunk[c], chunkSizes[c])));
+            } else {
+                free.add(chunk[c]);
+            }
+        }
+        return reductions;
+    }
+    
+    // chunks are merged in the order they were read, hence the sketches 
+    // are the same for every run
+    private void merge(final ThreadPool pool, 
+            final List<Future<ChunkReduction>> partials, 
+            final LinkedList<double[]> free) 
+        throws CanceledExecutionException {
+        for (Future<ChunkReduction> partial : partials) {
+            ChunkReduction reduction = await(pool, partial);
+            m_sketches[reduction.m_column].merge(reduction.m_chunkSketch);
+            free.add(reduction.m_values);
+        }
+    }
+    
+    /**
+     * Decides for each row in turn whether it belongs to the sample. The 
+     * strata are consecutive, non-empty ranges of rows.
+     */
+    private static final class StratifiedSample {
+        
+        // fixed seed, the sample is the same for every run
+        private final Random m_random = new Random(0);
+        
+        private final double m_width;
+        
+        private long m_row = -1;
+        
+        private long m_stratum;
+        
+        private long m_sampledRow;
+        
+        StratifiedSample(final long rowCount, final int sampleSize) {
+            m_width = rowCount / (double)sampleSize;
+            m_sampledRow = chooseRow();
+        }
+        
+        // a random row of the current stratum
+        private long chooseRow() {
+            long first = (long)Math.ceil(m_stratum * m_width);
+            long end = (long)Math.ceil((m_stratum + 1) * m_width);
+            return first + (long)(m_random.nextDouble() * (end - first));
+        }
+        
+        /**
+         * @return true if the next row belongs to the sample
+         */
+        boolean next() {
+            m_row++;
+            if (m_row != m_sampledRow) {
+                return false;
+            }
+            m_stratum++;
+            m_sampledRow = chooseRow();
+            return true;
+        }
+    }
+    
+    /**
+     * Computes the sketch of one column of a chunk.
+     */
+    private final class ChunkReduction implements Callable<ChunkReduction> {
+        
+        private final int m_column;
+        
+        private final double[] m_values;
+        
+        private final int m_size;
+        
+        private QuantileSketch m_chunkSketch;
+        
+        ChunkReduction(final int column, final double[] values, 
+                final int size) {
+            m_column = column;
+            m_values = values;
+            m_size = size;
+        }
+        /** {@inheritDoc} */
+        @Override
+        public ChunkReduction call() {
+            m_chunkSketch = new QuantileSketch(m_sketchSize);
+            for (int i = 0; i < m_size; i++) {
+                m_chunkSketch.update(m_values[i]);
+            }
+            return this;
+        }
+    }
+
+}
@@ -0,0 +1,194 @@
+/*
+ * ------------------------------------------------------------------------
+  * This source code, its documentation and all appendant files
+ * are protected by copyright law. All rights reserved.
+ *
+ * Copyright, 2008 - 2012
+ * KNIME.com, Zurich, Switzerland
+ *
+ * You may not modify, publish, transmit, transfer or sell, reproduce,
+ * create derivative works from, distribute, perform, display, or in
+ * any way exploit any of the content, in whole or in part, except as
+ * otherwise expressly permitted in writing by the copyright owner or
+ * as specified in the license file distributed with this product.
+ *
+ * If you have any questions please contact the copyright holder:
+ * website: www.knime.com
+ * email: contact@knime.com
+ * ---------------------------------------------------------------------
+ */
+package org.knime.example;
+
+import java.util.LinkedList;
+import java.util.concurrent.Callable;
+import java.util.concurrent.Future;
+
+import org.knime.core.data.DataCell;
+import org.knime.core.data.DataRow;
+import org.knime.core.data.DataTableSpec;
+import org.knime.core.data.container.CloseableRowIterator;
+import org.knime.core.data.def.DefaultRow;
+import org.knime.core.node.BufferedDataContainer;
+import org.knime.core.node.BufferedDataTable;
+import org.knime.core.node.CanceledExecutionException;
+import org.knime.core.node.ExecutionContext;
+import org.knime.core.node.ExecutionMonitor;
+import org.knime.core.util.ThreadPool;
+
+/**
+ * Bins a table in a sub pool of the KNIME thread pool. The rows are read in
+ * chunks; each chunk is binned by another thread into binners of its own, 
+ * so no accumulator is shared between threads. The chunks are merged into
+ * the binners of the cell factory in the order they were read and their 
+ * values are summed row by row, hence the bins, their statistics and the 
+ * output table are the same as if the table was binned by a single thread.
+ * 
+ * @author KNIME.com AG, Zurich, Switzerland
+ */
+public class NumericParallelBinner {
+    
+    private final NumericBinnerCellFactory m_factory;
+    
+    private final int m_nrThreads;
+    
+    /**
+     * @param factory the cell factory whose binners are filled
+     */
+    public NumericParallelBinner(final NumericBinnerCellFactory factory) {
+        this(factory, Runtime.getRuntime().availableProcessors());
+    }
+    
+    /**
+     * @param factory the cell factory whose binners are filled
+     * @param nrThreads the maximum number of threads binning the chunks
+     */
+    public NumericParallelBinner(final NumericBinnerCellFactory factory,
+            final int nrThreads) {
+        m_factory = factory;
+        m_nrThreads = Math.max(1, nrThreads);
+    }
+    
+    /**
+     * Bins the table and appends the columns of the cell factory.
+     * 
+     * @param table the table to bin
+     * @param exec to create the output and to check for cancellation
+     * @param progress to report the progress of the binning
+     * @return the table with the appended bin numbers
+     * @throws CanceledExecutionException if the execution was canceled
+     */
+    public BufferedDataTable execute(final BufferedDataTable table,
+            final ExecutionContext exec, final ExecutionMonitor progress) 
+        throws CanceledExecutionException {
+        final int rowCount = table.getRowCount();
+        // at most two chunks per thread in flight to bound the memory
+        final int maxPending = 2 * m_nrThreads;
+        ThreadPool pool = NumericDomainCalculator.createPool(m_nrThreads);
+        LinkedList<Future<ChunkBinning>> pending = 
+            new LinkedList<Future<ChunkBinning>>();
+        BufferedDataContainer newColumns = exec.createDataContainer(
+                new DataTableSpec(m_factory.getColumnSpecs()));
+        CloseableRowIterator it = table.iterator();
+        try {
+            int rowNr = 0;
+            DataRow[] chunk = new DataRow[NumericDomainCalculator.CHUNK_SIZE];
+            int chunkSize = 0;
+            while (it.hasNext()) {
+                chunk[chunkSize++] = it.next();
+                rowNr++;
+                if (chunkSize == chunk.length) {
+                    progress.checkCanceled();
+                    progress.setProgress(0.9 * rowNr / rowCount, 
+                            "Binning row " + rowNr);
+                    pending.add(pool.enqueue(new ChunkBinning(
+                            chunk, chunkSize, rowNr - chunkSize)));
+                    chunk = new DataRow[NumericDomainCalculator.CHUNK_SIZE];
+                    chunkSize = 0;
+                    while (pending.size() >= maxPending) {
+                        merge(pool, pending.removeFirst(), newColumns);
+                    }
+                }
+            }
+            if (chunkSize > 0) {
+                pending.add(pool.enqueue(new ChunkBinning(
+                        chunk, chunkSize, rowNr - chunkSize)));
+            }
+            while (!pending.isEmpty()) {
+                merge(pool, pending.removeFirst(), newColumns);
+            }
+        } finally {
+            it.close();
+            for (Future<ChunkBinning> binning : pending) {
+                binning.cancel(true);
+            }
+            pool.shutdown();
+        }
+        newColumns.close();
+        return exec.createJoinedTable(table, newColumns.getTable(), 
+                progress.createSubProgress(0.1));
+    }
+    
+    // chunks are merged in the order they were read
+    private void merge(final ThreadPool pool, 
+            final Future<ChunkBinning> future, 
+            final BufferedDataContainer newColumns) 
+        throws CanceledExecutionException {
+        ChunkBinning binning = NumericDomainCalculator.await(pool, future);
+        NumericColumnBinner[] binners = m_factory.getBinners();
+        for (int c = 0; c < binners.length; c++) {
+            binners[c].merge(binning.m_binners[c], binning.m_binNumbers[c], 
+                    binning.m_size, binning.m_firstOrdinal);
+        }
+        for (int r = 0; r < binning.m_size; r++) {
+            newColumns.addRowToTable(binning.m_rows[r]);
+        }
+    }
+    
+    /**
+     * Bins the rows of one chunk into binners of its own.
+     */
+    private final class ChunkBinning implements Callable<ChunkBinning> {
+        
+        // the input rows, replaced by the rows of the new columns
+        private final DataRow[] m_rows;
+        
+        private final int m_size;
+        
+        private final int m_firstOrdinal;
+        
+        private final NumericColumnBinner[] m_binners;
+        
+        private final int[][] m_binNumbers;
+        
+        ChunkBinning(final DataRow[] rows, final int size, 
+                final int firstOrdinal) {
+            m_rows = rows;
+            m_size = size;
+            m_firstOrdinal = firstOrdinal;
+            NumericColumnBinner[] binners = m_factory.getBinners();
+            m_binners = new NumericColumnBinner[binners.length];
+            for (int c = 0; c < binners.length; c++) {
+                m_binners[c] = 
+                    binners[c].createChunkBinner(firstOrdinal, size);
+            }
+            m_binNumbers = new int[binners.length][size];
+        }
+        
+        /** {@inheritDoc} */
+        @Override
+        public ChunkBinning call() {
+            for (int r = 0; r < m_size; r++) {
+                DataRow row = m_rows[r];
+                DataCell[] cells = new DataCell[m_binners.length];
+                for (int c = 0; c < m_binners.length; c++) {
+                    int binNr = m_binners[c].bin(row, m_firstOrdinal + r);
+                    m_binNumbers[c][r] = binNr;
+                    cells[c] = m_binners[c].getBinCell(binNr);
+                }
+                m_rows[r] = new DefaultRow(row.getKey(), cells);
+            }
+            return this;
+        }
+    }
+
+}
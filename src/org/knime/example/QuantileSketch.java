@@ -0,0 +1,269 @@
+/*
+ * ------------------------------------------------------------------------
+  * This source code, its documentation and all appendant files
+ * are protected by copyright law. All rights reserved.
+ *
+ * Copyright, 2008 - 2012
+ * KNIME.com, Zurich, Switzerland
+ *
+ * You may not modify, publish, transmit, transfer or sell, reproduce,
+ * create derivative works from, distribute, perform, display, or in
+ * any way exploit any of the content, in whole or in part, except as
+ * otherwise expressly permitted in writing by the copyright owner or
+ * as specified in the license file distributed with this product.
+ *
+ * If you have any questions please contact the copyright holder:
+ * website: www.knime.com
+ * email: contact@knime.com
+ * ---------------------------------------------------------------------
+ */
+package org.knime.example;
+
+import java.util.Arrays;
+import java.util.Random;
+
+/**
+ * A mergeable, bounded memory sketch estimating quantiles of a stream of 
+ * values (KLL sketch). The values are kept in a hierarchy of buffers, an 
+ * item in level <code>h</code> stands for <code>2^h</code> values of the 
+ * stream. Whenever the buffers are full, one level is sorted and every 
+ * other item is promoted to the next level.
+ * <p>
+ * The size parameter <code>k</code> trades memory for accuracy: the sketch
+ * keeps about <code>3k</code> values and the rank error of a quantile is 
+ * roughly <code>1.7 / k</code>. Minimum and maximum are exact.
+ * <p>
+ * The sketch is not thread-safe, build one sketch per thread and 
+ * {@link #merge(QuantileSketch)} them.
+ * 
+ * @author KNIME.com AG, Zurich, Switzerland
+ */
+public class QuantileSketch {
+    
+    /** The default size parameter. */
+    public static final int DEFAULT_K = 200;
+    
+    /** The smallest sensible size parameter. */
+    public static final int MIN_K = 8;
+    
+    // the capacity of a level shrinks by this factor per level below the top
+    private static final double DECAY = 2.0 / 3.0;
+    
+    // fixed seed, the same input always leads to the same breakpoints
+    private static final long SEED = 20120101L;
+    
+    private final int m_k;
+    
+    private final Random m_random;
+    
+    private double[][] m_levels;
+    
+    private int[] m_sizes;
+    
+    private int m_numLevels;
+    
+    // number of items in all levels
+    private int m_size;
+    
+    // sum of the level capacities, compress if reached
+    private int m_maxSize;
+    
+    private long m_count;
+    
+    private double m_min = Double.POSITIVE_INFINITY;
+    
+    private double m_max = Double.NEGATIVE_INFINITY;
+    
+    /**
+     * Creates an empty sketch.
+     * @param k the size parameter, at least {@link #MIN_K}
+     */
+    public QuantileSketch(final int k) {
+        if (k < MIN_K) {
+            throw new IllegalArgumentException("Sketch size must be at least " 
+                    + MIN_K + ", was " + k);
+        }
+        m_k = k;
+        m_random = new Random(SEED);
+        m_levels = new double[4][];
+        m_sizes = new int[4];
+        addLevel();
+    }
+    
+    /**
+     * Adds a value to the sketch, NaN is ignored.
+     * @param value the value to add
+     */
+    public void update(final double value) {
+        if (Double.isNaN(value)) {
+            return;
+        }
+        if (value < m_min) {
+            m_min = value;
+        }
+        if (value > m_max) {
+            m_max = value;
+        }
+        m_count++;
+        append(0, value);
+        if (m_size >= m_maxSize) {
+            compress();
+        }
+    }
+    
+    /**
+     * Adds all values of the other sketch to this one.
+     * @param other the sketch to merge into this one, is not changed
+     */
+    public void merge(final QuantileSketch other) {
+        if (other.m_count == 0) {
+            return;
+        }
+        while (m_numLevels < other.m_numLevels) {
+            addLevel();
+        }
+        for (int h = 0; h < other.m_numLevels; h++) {
+            double[] level = other.m_levels[h];
+            for (int i = 0; i < other.m_sizes[h]; i++) {
+                append(h, level[i]);
+            }
+        }
+        m_count += other.m_count;
+        m_min = Math.min(m_min, other.m_min);
+        m_max = Math.max(m_max, other.m_max);
+        compress();
+    }
+    
+    /**
+     * @return the number of values added to this sketch
+     */
+    public long getCount() {
+        return m_count;
+    }
+    
+    /**
+     * @return the smallest value or positive infinity if the sketch is empty
+     */
+    public double getMin() {
+        return m_min;
+    }
+    
+    /**
+     * @return the largest value or negative infinity if the sketch is empty
+     */
+    public double getMax() {
+        return m_max;
+    }
+    
+    /**
+     * Estimates the quantiles for the given fractions.
+     * 
+     * @param fractions the fractions in ascending order, each in [0, 1]
+     * @return the estimated quantiles, the minimum for 0 and the maximum 
+     *  for 1
+     * @throws IllegalStateException if the sketch is empty
+     */
+    public double[] getQuantiles(final double[] fractions) {
+        if (m_count == 0) {
+            throw new IllegalStateException("Sketch is empty");
+        }
+        // merge the sorted levels, item weights double per level
+        int[] pos = new int[m_numLevels];
+        for (int h = 0; h < m_numLevels; h++) {
+            Arrays.sort(m_levels[h], 0, m_sizes[h]);
+        }
+        double[] quantiles = new double[fractions.length];
+        long weight = 0;
+        double value = m_min;
+        int q = 0;
+        while (q < fractions.length) {
+            if (fractions[q] <= 0) {
+                quantiles[q++] = m_min;
+                continue;
+            }
+            if (fractions[q] >= 1) {
+                quantiles[q++] = m_max;
+                continue;
+            }
+            double rank = fractions[q] * m_count;
+            if (weight >= rank) {
+                quantiles[q++] = value;
+                continue;
+            }
+            // next item in ascending order
+            int next = -1;
+            for (int h = 0; h < m_numLevels; h++) {
+                if (pos[h] < m_sizes[h] && (next < 0 
+                        || m_levels[h][pos[h]] < m_levels[next][pos[next]])) {
+                    next = h;
+                }
+            }
+            if (next < 0) {
+                // only rounding of the weights can lead here
+                quantiles[q++] = m_max;
+                continue;
+            }
+            value = m_levels[next][pos[next]++];
+            weight += 1L << next;
+        }
+        return quantiles;
+    }
+    
+    private void append(final int level, final double value) {
+        double[] buffer = m_levels[level];
+        if (m_sizes[level] == buffer.length) {
+            buffer = Arrays.copyOf(buffer, 2 * buffer.length);
+            m_levels[level] = buffer;
+        }
+        buffer[m_sizes[level]++] = value;
+        m_size++;
+    }
+    
+    private int capacity(final int level) {
+        int depth = m_numLevels - level - 1;
+        return Math.max(2, (int)Math.ceil(m_k * Math.pow(DECAY, depth)));
+    }
+    
+    private void addLevel() {
+        if (m_numLevels == m_levels.length) {
+            m_levels = Arrays.copyOf(m_levels, 2 * m_numLevels);
+            m_sizes = Arrays.copyOf(m_sizes, 2 * m_numLevels);
+        }
+        m_levels[m_numLevels] = new double[MIN_K];
+        m_numLevels++;
+        m_maxSize = 0;
+        for (int h = 0; h < m_numLevels; h++) {
+            m_maxSize += capacity(h);
+        }
+    }
+    
+    private void compress() {
+        while (m_size >= m_maxSize) {
+            // some level is at its capacity, compact the lowest one
+            for (int h = 0; h < m_numLevels; h++) {
+                if (m_sizes[h] >= capacity(h)) {
+                    if (h + 1 == m_numLevels) {
+                        addLevel();
+                    }
+                    compact(h);
+                    break;
+                }
+            }
+        }
+    }
+    
+    private void compact(final int level) {
+        double[] buffer = m_levels[level];
+        int size = m_sizes[level];
+        Arrays.sort(buffer, 0, size);
+        // an odd item stays in this level
+        int start = size % 2;
+        int offset = m_random.nextBoolean() ? 1 : 0;
+        m_sizes[level] = start;
+        m_size -= size - start;
+        for (int i = start + offset; i < size; i += 2) {
+            append(level + 1, buffer[i]);
+        }
+    }
+
+}
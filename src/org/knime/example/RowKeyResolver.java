@@ -0,0 +1,195 @@
+/*
+ * ------------------------------------------------------------------------
+  * This source code, its documentation and all appendant files
+ * are protected by copyright law. All rights reserved.
+ *
+ * Copyright, 2008 - 2012
+ * KNIME.com, Zurich, Switzerland
+ *
+ * You may not modify, publish, transmit, transfer or sell, reproduce,
+ * create derivative works from, distribute, perform, display, or in
+ * any way exploit any of the content, in whole or in part, except as
+ * otherwise expressly permitted in writing by the copyright owner or
+ * as specified in the license file distributed with this product.
+ *
+ * If you have any questions please contact the copyright holder:
+ * website: www.knime.com
+ * email: contact@knime.com
+ * ---------------------------------------------------------------------
+ */
+package org.knime.example;
+
+import java.util.Iterator;
+
+import org.knime.core.data.DataRow;
+import org.knime.core.data.RowKey;
+import org.knime.core.node.BufferedDataTable;
+
+/**
+ * Translates row ordinals, i.e. the positions of the rows in the binned 
+ * table, back to their row keys. The keys are either read lazily from a 
+ * table once they are needed for the first time (usually for hiliting) or 
+ * given explicitly.
+ * 
+ * @author KNIME.com AG, Zurich, Switzerland
+ */
+public class RowKeyResolver {
+    
+    private BufferedDataTable m_table;
+    
+    private RowKey[] m_keys;
+    
+    // open addressing hash index from key to ordinal + 1, 0 marks a free slot
+    private int[] m_index;
+    
+    // the largest power of two an array can hold
+    private static final int MAX_CAPACITY = 1 << 30;
+    
+    /**
+     * Creates a resolver without keys.
+     */
+    public RowKeyResolver() {
+        // keys are set later
+    }
+    
+    /**
+     * @param table the table providing the keys in the order of the 
+     *  ordinals, may be <code>null</code>
+     */
+    public synchronized void setTable(final BufferedDataTable table) {
+        m_table = table;
+        m_keys = null;
+        m_index = null;
+    }
+    
+    /**
+     * @return the table providing the keys or <code>null</code>
+     */
+    public synchronized BufferedDataTable getTable() {
+        return m_table;
+    }
+    
+    /**
+     * @param keys the keys in the order of the ordinals, not copied
+     */
+    public synchronized void setKeys(final RowKey[] keys) {
+        m_table = null;
+        m_keys = keys;
+        m_index = null;
+    }
+    
+    /**
+     * @return true if keys can be resolved
+     */
+    public synchronized boolean hasKeys() {
+        return m_keys != null || m_table != null;
+    }
+    
+    /**
+     * Returns all keys, they are read from the table on the first call.
+     * 
+     * @return the keys by ordinal, must not be changed
+     * @throws IllegalStateException if no keys are available
+     */
+    public synchronized RowKey[] getKeys() {
+        if (m_keys == null) {
+            if (m_table == null) {
+                throw new IllegalStateException("Row keys are not available");
+            }
+            RowKey[] keys = new RowKey[m_table.getRowCount()];
+            int ordinal = 0;
+            for (DataRow row : m_table) {
+                keys[ordinal++] = row.getKey();
+            }
+            m_keys = keys;
+        }
+        return m_keys;
+    }
+    
+    /**
+     * @param ordinal the ordinal of a row
+     * @return the key of the row
+     */
+    public RowKey getRowKey(final int ordinal) {
+        return getKeys()[ordinal];
+    }
+    
+    /**
+     * Finds the ordinal of a key, the index is built on the first call.
+     * 
+     * @param key the key of a row
+     * @return the ordinal of the row or -1 if the key is unknown
+     */
+    public synchronized int getOrdinal(final RowKey key) {
+        RowKey[] keys = getKeys();
+        if (keys.length > MAX_CAPACITY / 4 * 3) {
+            // too many keys for an index, only with billions of rows
+            for (int ordinal = 0; ordinal < keys.length; ordinal++) {
+                if (keys[ordinal].equals(key)) {
+                    return ordinal;
+                }
+            }
+            return -1;
+        }
+        if (m_index == null) {
+            // load factor of at most 0.5 below 2^29 keys, 0.75 above
+            int capacity = (int)Math.min(MAX_CAPACITY, 
+                    Long.highestOneBit(Math.max(2, keys.length) * 2L - 1) << 1);
+            int[] index = new int[capacity];
+            for (int ordinal = 0; ordinal < keys.length; ordinal++) {
+                int slot = slot(keys[ordinal], capacity);
+                while (index[slot] != 0) {
+                    slot = (slot + 1) & (capacity - 1);
+                }
+                index[slot] = ordinal + 1;
+            }
+            m_index = index;
+        }
+        int mask = m_index.length - 1;
+        int slot = slot(key, m_index.length);
+        while (m_index[slot] != 0) {
+            int ordinal = m_index[slot] - 1;
+            if (keys[ordinal].equals(key)) {
+                return ordinal;
+            }
+            slot = (slot + 1) & mask;
+        }
+        return -1;
+    }
+    
+    private static int slot(final RowKey key, final int capacity) {
+        int hash = key.hashCode();
+        // spread the bits, the capacity is a power of two
+        hash ^= (hash >>> 16);
+        hash *= 0x85EBCA6B;
+        hash ^= (hash >>> 13);
+        return hash & (capacity - 1);
+    }
+    
+    /**
+     * @param ordinals the ordinals to translate
+     * @return an iterator over the keys of the ordinals
+     */
+    public Iterator<RowKey> iterator(final RowOrdinalSet ordinals) {
+        final RowKey[] keys = getKeys();
+        final RowOrdinalSet.OrdinalIterator it = ordinals.iterator();
+        return new Iterator<RowKey>() {
+            /** {@inheritDoc} */
+            @Override
+            public boolean hasNext() {
+                return it.hasNext();
+            }
+            /** {@inheritDoc} */
+            @Override
+            public RowKey next() {
+                return keys[it.next()];
+            }
+            /** {@inheritDoc} */
+            @Override
+            public void remove() {
+                throw new UnsupportedOperationException();
+            }
+        };
+    }
+
+}
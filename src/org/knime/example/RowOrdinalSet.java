@@ -0,0 +1,413 @@
+/*
+ * ------------------------------------------------------------------------
+  * This source code, its documentation and all appendant files
+ * are protected by copyright law. All rights reserved.
+ *
+ * Copyright, 2008 - 2012
+ * KNIME.com, Zurich, Switzerland
+ *
+ * You may not modify, publish, transmit, transfer or sell, reproduce,
+ * create derivative works from, distribute, perform, display, or in
+ * any way exploit any of the content, in whole or in part, except as
+ * otherwise expressly permitted in writing by the copyright owner or
+ * as specified in the license file distributed with this product.
+ *
+ * If you have any questions please contact the copyright holder:
+ * website: www.knime.com
+ * email: contact@knime.com
+ * ---------------------------------------------------------------------
+ */
+package org.knime.example;
+
+import java.io.DataInput;
+import java.io.DataOutput;
+import java.io.IOException;
+import java.util.Arrays;
+import java.util.NoSuchElementException;
+
+/**
+ * A compressed set of row ordinals, i.e. of the positions of rows in a 
+ * table. The ordinals are grouped by their upper 16 bits into containers. 
+ * A container holds its lower 16 bits either as a sorted array (at most 
+ * 4096 entries, two bytes per row) or as a bitmap of 8 KB, whichever is 
+ * smaller (Roaring bitmap). Adding ordinals in ascending order, as done 
+ * when a table is processed, takes constant time.
+ * <p>
+ * The set is not thread-safe.
+ * 
+ * @author KNIME.com AG, Zurich, Switzerland
+ */
+public class RowOrdinalSet {
+    
+    // an array container is turned into a bitmap beyond this size
+    private static final int ARRAY_MAX = 4096;
+    
+    private static final int BITMAP_WORDS = 1 << 10;
+    
+    // the upper 16 bits of the ordinals in each container, ascending
+    private int[] m_highs;
+    
+    // for each container either the sorted lower bits ...
+    private char[][] m_arrays;
+    
+    // ... or the bitmap of the lower bits
+    private long[][] m_bitmaps;
+    
+    private int[] m_cardinalities;
+    
+    private int m_nrContainers;
+    
+    private int m_size;
+    
+    // the bytes of the arrays and bitmaps, maintained while adding
+    private long m_containerBytes;
+    
+    /**
+     * Creates an empty set.
+     */
+    public RowOrdinalSet() {
+        m_highs = new int[1];
+        m_arrays = new char[1][];
+        m_bitmaps = new long[1][];
+        m_cardinalities = new int[1];
+    }
+    
+    /**
+     * Adds an ordinal.
+     * @param ordinal the ordinal to add, not negative
+     * @return true if the ordinal was not contained before
+     */
+    public boolean add(final int ordinal) {
+        if (ordinal < 0) {
+            throw new IllegalArgumentException(
+                    "Row ordinal must not be negative: " + ordinal);
+        }
+        int high = ordinal >>> 16;
+        char low = (char)ordinal;
+        int container;
+        // fast path for ascending ordinals
+        if (m_nrContainers > 0 && m_highs[m_nrContainers - 1] == high) {
+            container = m_nrContainers - 1;
+        } else {
+            container = Arrays.binarySearch(m_highs, 0, m_nrContainers, high);
+            if (container < 0) {
+                container = -container - 1;
+                insertContainer(container, high);
+            }
+        }
+        boolean added;
+        if (m_bitmaps[container] != null) {
+            added = addToBitmap(m_bitmaps[container], low);
+        } else {
+            added = addToArray(container, low);
+        }
+        if (added) {
+            m_cardinalities[container]++;
+            m_size++;
+            if (m_bitmaps[container] == null 
+                    && m_cardinalities[container] > ARRAY_MAX) {
+                toBitmap(container);
+            }
+        }
+        return added;
+    }
+    
+    /**
+     * @param ordinal the ordinal to check
+     * @return true if the ordinal is contained in this set
+     */
+    public boolean contains(final int ordinal) {
+        if (ordinal < 0) {
+            return false;
+        }
+        int container = Arrays.binarySearch(m_highs, 0, m_nrContainers, 
+                ordinal >>> 16);
+        if (container < 0) {
+            return false;
+        }
+        char low = (char)ordinal;
+        long[] bitmap = m_bitmaps[container];
+        if (bitmap != null) {
+            return (bitmap[low >>> 6] & (1L << low)) != 0;
+        }
+        return Arrays.binarySearch(m_arrays[container], 0, 
+                m_cardinalities[container], low) >= 0;
+    }
+    
+    /**
+     * @return the number of ordinals in this set
+     */
+    public int size() {
+        return m_size;
+    }
+    
+    /**
+     * @return the ordinals in ascending order
+     */
+    public int[] toArray() {
+        int[] result = new int[m_size];
+        int i = 0;
+        for (OrdinalIterator it = iterator(); it.hasNext();) {
+            result[i++] = it.next();
+        }
+        return result;
+    }
+    
+    /**
+     * @return an iterator over the ordinals in ascending order
+     */
+    public OrdinalIterator iterator() {
+        return new OrdinalIterator();
+    }
+    
+    /**
+     * Releases the unused capacity of the containers. Call it once all 
+     * ordinals are added.
+     */
+    public void trim() {
+        for (int i = 0; i < m_nrContainers; i++) {
+            if (m_arrays[i] != null 
+                    && m_arrays[i].length > m_cardinalities[i]) {
+                m_containerBytes -= 
+                    2L * (m_arrays[i].length - m_cardinalities[i]);
+                m_arrays[i] = Arrays.copyOf(m_arrays[i], m_cardinalities[i]);
+            }
+        }
+        m_highs = Arrays.copyOf(m_highs, Math.max(1, m_nrContainers));
+        m_arrays = Arrays.copyOf(m_arrays, m_highs.length);
+        m_bitmaps = Arrays.copyOf(m_bitmaps, m_highs.length);
+        m_cardinalities = Arrays.copyOf(m_cardinalities, m_highs.length);
+    }
+    
+    /**
+     * Takes constant time, hence it can be called after each added ordinal.
+     * 
+     * @return the approximate number of bytes used by this set
+     */
+    public long getMemoryUsage() {
+        // header and the per container arrays
+        return 64 + 24L * m_highs.length + m_containerBytes;
+    }
+    
+    /**
+     * Writes the size followed by the differences between consecutive 
+     * ordinals as variable length integers, i.e. mostly one byte per 
+     * ordinal for dense bins.
+     * 
+     * @param out the output to write to
+     * @throws IOException if the output cannot be written
+     * @see #readFrom(DataInput)
+     */
+    public void writeTo(final DataOutput out) throws IOException {
+        out.writeInt(m_size);
+        writeDeltas(out, -1);
+    }
+    
+    /**
+     * Writes the differences between consecutive ordinals, the first one 
+     * relative to the given ordinal. Used to continue a sequence written 
+     * from several sets with ascending ordinals.
+     * 
+     * @param out the output to write to
+     * @param previous the ordinal written before, -1 if none
+     * @return the last ordinal written
+     * @throws IOException if the output cannot be written
+     */
+    int writeDeltas(final DataOutput out, final int previous) 
+        throws IOException {
+        int last = previous;
+        for (OrdinalIterator it = iterator(); it.hasNext();) {
+            int ordinal = it.next();
+            int delta = ordinal - last;
+            if (delta <= 0) {
+                throw new IOException("Row ordinals not ascending");
+            }
+            while ((delta & ~0x7F) != 0) {
+                out.writeByte((delta & 0x7F) | 0x80);
+                delta >>>= 7;
+            }
+            out.writeByte(delta);
+            last = ordinal;
+        }
+        return last;
+    }
+    
+    /**
+     * @param in the input to read from
+     * @return the set written by {@link #writeTo(DataOutput)}
+     * @throws IOException if the input cannot be read or is corrupt
+     */
+    public static RowOrdinalSet readFrom(final DataInput in) 
+        throws IOException {
+        RowOrdinalSet set = new RowOrdinalSet();
+        set.addAll(in);
+        set.trim();
+        return set;
+    }
+    
+    /**
+     * Adds the ordinals written by {@link #writeTo(DataOutput)} while they 
+     * are read, e.g. to merge several sets from a stream.
+     * 
+     * @param in the input to read from
+     * @throws IOException if the input cannot be read or is corrupt
+     */
+    void addAll(final DataInput in) throws IOException {
+        int size = in.readInt();
+        if (size < 0) {
+            throw new IOException("Invalid number of row ordinals: " + size);
+        }
+        int ordinal = -1;
+        for (int i = 0; i < size; i++) {
+            int delta = 0;
+            int shift = 0;
+            int b;
+            do {
+                if (shift > 28) {
+                    throw new IOException("Invalid row ordinal");
+                }
+                b = in.readUnsignedByte();
+                delta |= (b & 0x7F) << shift;
+                shift += 7;
+            } while ((b & 0x80) != 0);
+            ordinal += delta;
+            if (delta <= 0 || ordinal < 0) {
+                throw new IOException("Row ordinals not ascending");
+            }
+            add(ordinal);
+        }
+    }
+    
+    private void insertContainer(final int index, final int high) {
+        if (m_nrContainers == m_highs.length) {
+            int capacity = 2 * m_highs.length;
+            m_highs = Arrays.copyOf(m_highs, capacity);
+            m_arrays = Arrays.copyOf(m_arrays, capacity);
+            m_bitmaps = Arrays.copyOf(m_bitmaps, capacity);
+            m_cardinalities = Arrays.copyOf(m_cardinalities, capacity);
+        }
+        int moved = m_nrContainers - index;
+        System.arraycopy(m_highs, index, m_highs, index + 1, moved);
+        System.arraycopy(m_arrays, index, m_arrays, index + 1, moved);
+        System.arraycopy(m_bitmaps, index, m_bitmaps, index + 1, moved);
+        System.arraycopy(m_cardinalities, index, m_cardinalities, index + 1, 
+                moved);
+        m_highs[index] = high;
+        m_arrays[index] = new char[4];
+        m_containerBytes += 16 + 2L * m_arrays[index].length;
+        m_bitmaps[index] = null;
+        m_cardinalities[index] = 0;
+        m_nrContainers++;
+    }
+    
+    private static boolean addToBitmap(final long[] bitmap, final char low) {
+        long mask = 1L << low;
+        int word = low >>> 6;
+        if ((bitmap[word] & mask) != 0) {
+            return false;
+        }
+        bitmap[word] |= mask;
+        return true;
+    }
+    
+    private boolean addToArray(final int container, final char low) {
+        char[] array = m_arrays[container];
+        int size = m_cardinalities[container];
+        int pos;
+        // fast path for ascending ordinals
+        if (size == 0 || array[size - 1] < low) {
+            pos = size;
+        } else {
+            pos = Arrays.binarySearch(array, 0, size, low);
+            if (pos >= 0) {
+                return false;
+            }
+            pos = -pos - 1;
+        }
+        if (size == array.length) {
+            array = Arrays.copyOf(array, Math.min(2 * size, ARRAY_MAX + 1));
+            m_containerBytes += 2L * (array.length - size);
+            m_arrays[container] = array;
+        }
+        System.arraycopy(array, pos, array, pos + 1, size - pos);
+        array[pos] = low;
+        return true;
+    }
+    
+    private void toBitmap(final int container) {
+        long[] bitmap = new long[BITMAP_WORDS];
+        char[] array = m_arrays[container];
+        for (int i = 0; i < m_cardinalities[container]; i++) {
+            addToBitmap(bitmap, array[i]);
+        }
+        m_bitmaps[container] = bitmap;
+        m_arrays[container] = null;
+        m_containerBytes += 8L * BITMAP_WORDS - 2L * array.length;
+    }
+    
+    /**
+     * Iterates over the ordinals in ascending order without boxing them.
+     */
+    public final class OrdinalIterator {
+        
+        private int m_container;
+        
+        // position in the array or bit in the bitmap of the container
+        private int m_pos;
+        
+        private int m_next = -1;
+        
+        private OrdinalIterator() {
+            advance();
+        }
+        
+        /**
+         * @return true if there are more ordinals
+         */
+        public boolean hasNext() {
+            return m_next >= 0;
+        }
+        
+        /**
+         * @return the next ordinal
+         */
+        public int next() {
+            if (m_next < 0) {
+                throw new NoSuchElementException();
+            }
+            int result = m_next;
+            advance();
+            return result;
+        }
+        
+        private void advance() {
+            while (m_container < m_nrContainers) {
+                int high = m_highs[m_container] << 16;
+                long[] bitmap = m_bitmaps[m_container];
+                if (bitmap != null) {
+                    int word = m_pos >>> 6;
+                    if (word < BITMAP_WORDS) {
+                        long bits = bitmap[word] & (-1L << m_pos);
+                        while (bits == 0 && ++word < BITMAP_WORDS) {
+                            bits = bitmap[word];
+                        }
+                        if (bits != 0) {
+                            int low = (word << 6) 
+                                + Long.numberOfTrailingZeros(bits);
+                            m_pos = low + 1;
+                            m_next = high | low;
+                            return;
+                        }
+                    }
+                } else if (m_pos < m_cardinalities[m_container]) {
+                    m_next = high | m_arrays[m_container][m_pos++];
+                    return;
+                }
+                m_container++;
+                m_pos = 0;
+            }
+            m_next = -1;
+        }
+    }
+
+}
@@ -0,0 +1,61 @@
+/*
+ * ------------------------------------------------------------------------
+  * This source code, its documentation and all appendant files
+ * are protected by copyright law. All rights reserved.
+ *
+ * Copyright, 2008 - 2012
+ * KNIME.com, Zurich, Switzerland
+ *
+ * You may not modify, publish, transmit, transfer or sell, reproduce,
+ * create derivative works from, distribute, perform, display, or in
+ * any way exploit any of the content, in whole or in part, except as
+ * otherwise expressly permitted in writing by the copyright owner or
+ * as specified in the license file distributed with this product.
+ *
+ * If you have any questions please contact the copyright holder:
+ * website: www.knime.com
+ * email: contact@knime.com
+ * ---------------------------------------------------------------------
+ */
+package org.knime.example;
+
+/**
+ * Lookup for arbitrary breakpoints. The bin is found by a binary search 
+ * over the primitive breakpoints, i.e. in logarithmic time.
+ * 
+ * @author KNIME.com AG, Zurich, Switzerland
+ */
+public class SortedBinLookup extends NumericBinLookup {
+    
+    /**
+     * @param breakpoints the breakpoints of the bins in ascending order
+     */
+    public SortedBinLookup(final double[] breakpoints) {
+        super(breakpoints);
+    }
+
+    /** {@inheritDoc} */
+    @Override
+    public int getBinIndex(final double value) {
+        // find the first upper bound greater or equal to the value
+        int low = 1;
+        int high = m_breakpoints.length;
+        while (low < high) {
+            int mid = (low + high) >>> 1;
+            if (value <= m_breakpoints[mid]) {
+                high = mid;
+            } else {
+                low = mid + 1;
+            }
+        }
+        // NaN is never lower or equal, hence also ends up here
+        if (low == m_breakpoints.length) {
+            return NO_BIN;
+        }
+        if (low == 1 && m_underflowBin && value == m_breakpoints[1]) {
+            return 1;
+        }
+        return low - 1;
+    }
+
+}